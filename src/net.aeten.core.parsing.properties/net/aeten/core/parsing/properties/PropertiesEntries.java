@@ -0,0 +1,22 @@
+package net.aeten.core.parsing.properties;
+
+import net.aeten.core.parsing.ParsingException;
+
+/**
+ * Source of the entries of a properties file.
+ */
+interface PropertiesEntries {
+	/**
+	 * Moves to the next entry.
+	 *
+	 * @return false at the end.
+	 */
+	boolean next() throws ParsingException;
+
+	String key();
+
+	String value();
+
+	/** Releases the resources held by the source, which may be closed before its end. */
+	void close();
+}
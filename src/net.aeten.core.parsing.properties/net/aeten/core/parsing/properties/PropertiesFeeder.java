@@ -0,0 +1,137 @@
+package net.aeten.core.parsing.properties;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.support.EventDispatcher;
+import net.aeten.core.parsing.support.ParsingFeeder;
+
+/**
+ * Feeder tokenizing the characters as they are decoded, the complete entries waiting in a queue. A grouped parse fires a key
+ * once the following key has arrived, since a later value of a key replaces the previous ones. An unsorted parse sorts the
+ * entries as they arrive, within its bounded memory, and only fires its events at the end of input.
+ */
+class PropertiesFeeder implements ParsingFeeder {
+	private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private final PropertiesTokenizer tokenizer = new PropertiesTokenizer();
+	private final Entries entries = new Entries();
+	private final PropertiesSorter sorter;
+	private final EventDispatcher dispatcher;
+	private final PropertiesParserImpl parser;
+	// Bytes of a character cut at the end of the previous part
+	private final ByteBuffer carry = ByteBuffer.allocate(8);
+	private boolean ended = false, closed = false;
+
+	PropertiesFeeder(PropertiesParser source, PropertiesParser.Order order, int runLength, Handler<ParsingData<MarkupNode>> handler) {
+		sorter = (order == PropertiesParser.Order.GROUPED)? null: new PropertiesSorter(entries, runLength);
+		dispatcher = new EventDispatcher(source, handler);
+		parser = new PropertiesParserImpl(dispatcher, (sorter == null)? entries: sorter);
+	}
+
+	@Override
+	public void feed(ByteBuffer bytes) throws ParsingException {
+		if (isDone()) {
+			bytes.position(bytes.limit());
+			return;
+		}
+		while (carry.position() > 0 && bytes.hasRemaining()) {
+			carry.put(bytes.get());
+			carry.flip();
+			tokenizer.feed(carry, decoder, false);
+			carry.compact();
+		}
+		tokenizer.feed(bytes, decoder, false);
+		carry.put(bytes);
+		read();
+	}
+
+	@Override
+	public void endOfInput() throws ParsingException {
+		if (ended || closed) { return; }
+		ended = true;
+		try {
+			carry.flip();
+			tokenizer.feed(carry, decoder, true);
+			read();
+		} finally {
+			parser.close();
+		}
+	}
+
+	@Override
+	public boolean isDone() {
+		return ended || closed || dispatcher.isStopped();
+	}
+
+	@Override
+	public void close() {
+		if (closed) { return; }
+		closed = true;
+		parser.close();
+	}
+
+	/**
+	 * Queues the complete entries, and fires those which are settled.
+	 */
+	private void read() throws ParsingException {
+		while (tokenizer.next()) {
+			entries.add(tokenizer.key(), tokenizer.value());
+		}
+		if (sorter != null && !ended) {
+			sorter.collect();
+			return;
+		}
+		while ((ended || entries.isFollowed()) && parser.step()) {}
+	}
+
+	/**
+	 * Complete entries, not yet read by the parse.
+	 */
+	private static class Entries implements PropertiesEntries {
+		private final ArrayDeque<String[]> queue = new ArrayDeque<>();
+		private String key, value;
+
+		void add(String key, String value) {
+			queue.add(new String[] { key, value });
+		}
+
+		/**
+		 * @return true if an entry of another key than the current one is queued, so that the parse can step without running out
+		 *         of entries while it merges the values of the current key.
+		 */
+		boolean isFollowed() {
+			return !queue.isEmpty() && !queue.peekLast()[0].equals(key);
+		}
+
+		@Override
+		public boolean next() {
+			String[] entry = queue.poll();
+			if (entry == null) { return false; }
+			key = entry[0];
+			value = entry[1];
+			return true;
+		}
+
+		@Override
+		public String key() {
+			return key;
+		}
+
+		@Override
+		public String value() {
+			return value;
+		}
+
+		@Override
+		public void close() {
+			queue.clear();
+		}
+	}
+}
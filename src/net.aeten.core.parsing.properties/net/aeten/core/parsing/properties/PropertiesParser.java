@@ -2,13 +2,9 @@ package net.aeten.core.parsing.properties;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
-import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayDeque;
 import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Properties;
 import java.util.Queue;
 
 import net.aeten.core.Format;
@@ -16,118 +12,99 @@ import net.aeten.core.event.Handler;
 import net.aeten.core.parsing.MarkupNode;
 import net.aeten.core.parsing.Parser;
 import net.aeten.core.parsing.ParsingData;
-import net.aeten.core.parsing.ParsingEvent;
 import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.support.AbstractCursor;
+import net.aeten.core.parsing.support.ConfiguredParser;
+import net.aeten.core.parsing.support.EventDispatcher;
+import net.aeten.core.parsing.support.ParsingCursor;
+import net.aeten.core.parsing.support.ParsingFeeder;
+import net.aeten.core.parsing.support.PullParser;
+import net.aeten.core.parsing.support.PushParser;
 import net.aeten.core.spi.Provider;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 /**
+ * Fires the keys of a properties file as a tree, the segments of a key being separated by '.'. The input is read entry by
+ * entry: depending on its {@link Order}, the events are fired as the keys arrive, or once they are sorted within a bounded
+ * memory. The input may also be fed by parts, through a {@link #feeder(Handler) feeder}.
  *
  * @author Thomas Pérennou
  */
 @Provider(Parser.class)
 @Format("properties")
-public class PropertiesParser implements Parser<MarkupNode> {
-	private static final Logger LOGGER = LoggerFactory.getLogger(PropertiesParser.class);
+public class PropertiesParser implements PullParser, PushParser, ConfiguredParser {
+	public static enum Order {
+		/** The keys are sorted, the entries of the input being spilled to temporary files when they are too many. */
+		UNSORTED,
+		/**
+		 * The keys sharing a prefix are contiguous, as in a sorted input, and are fired as they arrive. A prefix found again
+		 * after other keys is fired as another tag of the same name, and only the successive values of a key are merged.
+		 */
+		GROUPED
+	}
 
-	private class Tag {
-		protected final Tag parent;
-		protected final String name;
+	/** Default number of entries sorted in memory. */
+	public static final int RUN_LENGTH = 1 << 16;
 
-		public Tag(Tag parent, String name) {
-			this.parent = parent;
-			this.name = name;
-		}
+	private final Order order;
+	private final int runLength;
+
+	public PropertiesParser() {
+		this(Order.UNSORTED);
+	}
+
+	public PropertiesParser(Order order) {
+		this(order, RUN_LENGTH);
+	}
+
+	/**
+	 * @param runLength the number of entries sorted in memory, above which they are spilled to temporary files.
+	 */
+	public PropertiesParser(Order order, int runLength) {
+		if (runLength < 1) { throw new IllegalArgumentException("Run length " + runLength); }
+		this.order = order;
+		this.runLength = runLength;
 	}
 
 	@Override
 	public void parse(Reader reader, Handler<ParsingData<MarkupNode>> handler) throws ParsingException {
-		Properties properties = new Properties();
-		Tag current = null;
+		PropertiesParserImpl parser = new PropertiesParserImpl(new EventDispatcher(this, handler), entries(reader));
 		try {
-			properties.load(reader);
-			List<String> keys = new LinkedList<String>(properties.stringPropertyNames());
-			Collections.sort(keys);
-
-			int currentLevel = 0, previousLevel = 0;
-			fireEvent(handler, ParsingEvent.START_NODE, MarkupNode.LIST, null, null);
-			String[] previousPath, path = new String[0];
-			for (String keyPath: keys) {
-				previousPath = path;
-				path = keyPath.split("\\.");
-
-				int begin = -1;
-				for (int i = 0; i < path.length && i < previousPath.length; i++) {
-					if (path.length + 1 < i) {
-						break;
-					}
-					if (path[i].equals(previousPath[i])) {
-						begin = i;
-					} else break;
-				}
-				begin++;
-				for (int keyIndex = begin; keyIndex < path.length; previousLevel = keyIndex++) {
-					currentLevel = keyIndex;
-					if ((path.length > currentLevel + 1) && path[currentLevel + 1].matches("^\\d$")) {
-						continue;
-					}
-					String key = path[path[keyIndex].matches("^\\d$")? keyIndex - 1: keyIndex];
-					String value;
-					if (currentLevel == path.length - 1) {
-						value = properties.getProperty(keyPath);
-					} else {
-						value = "";
-					}
-					if (path[keyIndex].matches("^\\d$")) {
-						currentLevel--;
-					}
-					try {
-						if (currentLevel > previousLevel) {
-							fireEvent(handler, ParsingEvent.START_NODE, MarkupNode.LIST, null, current);
-							current = new Tag(current, key);
-							fireEvent(handler, ParsingEvent.START_NODE, MarkupNode.TAG, current.name, current.parent);
-						} else if (currentLevel < previousLevel) {
-							Tag parent = current;
-							for (int i = previousLevel; i >= keyIndex; i--) {
-								fireEvent(handler, ParsingEvent.END_NODE, MarkupNode.TAG, parent.name, parent.parent);
-								if (keyIndex != i) {
-									fireEvent(handler, ParsingEvent.END_NODE, MarkupNode.LIST, null, parent.parent);
-								}
-								parent = parent.parent;
-							}
-							current = new Tag((current == null)? null: parent, key);
-							fireEvent(handler, ParsingEvent.START_NODE, MarkupNode.TAG, current.name, current.parent);
-						} else {
-							if (current != null) {
-								fireEvent(handler, ParsingEvent.END_NODE, MarkupNode.TAG, current.name, current.parent);
-							}
-							current = new Tag((current == null)? null: current.parent, key);
-							fireEvent(handler, ParsingEvent.START_NODE, MarkupNode.TAG, current.name, current.parent);
-						}
-						if (!"".equals(value)) {
-							fireEvent(handler, ParsingEvent.START_NODE, MarkupNode.TEXT, value, current.parent);
-							fireEvent(handler, ParsingEvent.END_NODE, MarkupNode.TEXT, value, current.parent);
-						}
-					} catch (Throwable error) {
-						LOGGER.error("Unexpected error for " + key + ": " + value, error);
-					}
+			while (parser.step()) {}
+		} finally {
+			parser.close();
+		}
+	}
 
+	@Override
+	public ParsingCursor open(final Reader reader) throws ParsingException {
+		return new AbstractCursor(this) {
+			private PropertiesParserImpl parser = null;
+
+			@Override
+			protected boolean step() throws ParsingException {
+				if (parser == null) {
+					parser = new PropertiesParserImpl(dispatcher, entries(reader));
 				}
+				return parser.step();
 			}
-		} catch (IOException exception) {
-			LOGGER.error("I/O error", exception);
-		}
-		while (current != null) {
-			fireEvent(handler, ParsingEvent.END_NODE, MarkupNode.TAG, current.name, current.parent);
-			current = current.parent;
-			if (current != null) {
-				fireEvent(handler, ParsingEvent.END_NODE, MarkupNode.LIST, null, current);
+
+			@Override
+			protected void release() {
+				if (parser != null) {
+					parser.close();
+				}
 			}
+		};
+	}
 
-		}
-		fireEvent(handler, ParsingEvent.END_NODE, MarkupNode.LIST, null, null);
+	@Override
+	public ParsingFeeder feeder(Handler<ParsingData<MarkupNode>> handler) {
+		return new PropertiesFeeder(this, order, runLength, handler);
+	}
+
+	private PropertiesEntries entries(Reader reader) {
+		PropertiesTokenizer tokenizer = new PropertiesTokenizer(reader);
+		return (order == Order.GROUPED)? tokenizer: new PropertiesSorter(tokenizer, runLength);
 	}
 
 	public static void main(String[] args) throws Exception {
@@ -208,8 +185,11 @@ public class PropertiesParser implements Parser<MarkupNode> {
 		return PropertiesParser.class.getName();
 	}
 
-	private void fireEvent(Handler<ParsingData<MarkupNode>> handler, ParsingEvent event, MarkupNode nodeType, String value, Tag parent) {
-		handler.handleEvent(new ParsingData<MarkupNode>(this, event, nodeType, value, (parent == null)? null: parent.name));
+	/**
+	 * @return the order, the run length only bounding the memory of a parse.
+	 */
+	@Override
+	public Order getConfiguration() {
+		return order;
 	}
-
 }
@@ -0,0 +1,184 @@
+package net.aeten.core.parsing.properties;
+
+import java.util.Arrays;
+
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.ParsingEvent;
+import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.support.EventDispatcher;
+import net.aeten.core.parsing.support.SymbolTable;
+
+/**
+ * Builds the tree of the keys, which come grouped by prefix. A tag stands for a segment of a key, or for a segment and the
+ * index which follows it, the items of a list being tags of the same name. Only the open branch of the tree is kept: the
+ * boundaries of its tags in the last key, and their names, shared by all the keys of the branch.
+ *
+ * The branch stands for a prefix trie of the keys. Keys grouped by prefix, as the sorted ones are, come in the depth-first
+ * order of that trie: the common prefix with the previous key is the path of the trie they share, the tags closed and
+ * opened its edges left and taken. Each key is thus handled in time linear in its length, as an insertion into the trie
+ * would be, without holding the trie.
+ */
+class PropertiesParserImpl {
+	private final EventDispatcher dispatcher;
+	private final PropertiesEntries entries;
+	private boolean pending = false;
+	// Open branch: names of the tags and ends of their segments in the last key
+	private String key = null;
+	private String[] names = new String[8];
+	private int[] ends = new int[8];
+	private int depth = 0;
+	// Tags of the key being handled: ends of their names and of their segments
+	private int[] nameEnds = new int[8], tagEnds = new int[8];
+	private final SymbolTable symbols = new SymbolTable();
+	// Prefix of the keys under a tag whose events are skipped, which are left out
+	private String skippedPrefix = null;
+	private boolean started, ended = false;
+
+	PropertiesParserImpl(EventDispatcher dispatcher, PropertiesEntries entries) {
+		this.dispatcher = dispatcher;
+		this.entries = entries;
+		started = false;
+	}
+
+	/**
+	 * Fires the events of the next key, or of the end of the document.
+	 *
+	 * @return false once the document has ended, or the handler has stopped the parse.
+	 */
+	boolean step() throws ParsingException {
+		if (dispatcher.isStopped()) {
+			return false;
+		} else if (!started) {
+			started = true;
+			pending = entries.next();
+			fireEvent(ParsingEvent.START_NODE, MarkupNode.LIST, null, null);
+		} else if (pending) {
+			String keyPath = entries.key(), value = entries.value();
+			// The last of successive values of a key replaces the others
+			while ((pending = entries.next()) && entries.key().equals(keyPath)) {
+				value = entries.value();
+			}
+			key(keyPath, value);
+		} else if (!ended) {
+			ended = true;
+			end();
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	void close() {
+		entries.close();
+	}
+
+	private void key(String keyPath, String value) {
+		if (skippedPrefix != null && dispatcher.isSkipping() && keyPath.startsWith(skippedPrefix)) { return; }
+		skippedPrefix = null;
+		int count = tags(keyPath);
+		int common = 0;
+		while (common < depth && common < count && tagEnds[common] == ends[common] && keyPath.regionMatches(start(common), key, start(common), ends[common] - start(common))) {
+			common++;
+		}
+		if (common == count) {
+			// Same tags as a previous key, which are not sorted
+			common--;
+		}
+		for (int level = depth - 1; level >= common; level--) {
+			fireEvent(ParsingEvent.END_NODE, MarkupNode.TAG, names[level], parent(level));
+			if (level != common) {
+				fireEvent(ParsingEvent.END_NODE, MarkupNode.LIST, null, parent(level));
+			}
+		}
+		if (names.length < count) {
+			names = Arrays.copyOf(names, Math.max(names.length << 1, count));
+			ends = new int[names.length];
+		}
+		for (int level = common; level < count; level++) {
+			if (level > 0 && (level > common || common == depth)) {
+				fireEvent(ParsingEvent.START_NODE, MarkupNode.LIST, null, parent(level));
+			}
+			int start = (level == 0)? 0: tagEnds[level - 1] + 1;
+			// The items of a list share the name of the first one, the other names are interned
+			if (level >= depth || names[level].length() != nameEnds[level] - start || !keyPath.startsWith(names[level], start)) {
+				names[level] = symbols.intern(keyPath, start, nameEnds[level]);
+			}
+			fireEvent(ParsingEvent.START_NODE, MarkupNode.TAG, names[level], parent(level));
+			if (skippedPrefix == null && dispatcher.isSkipping()) {
+				skippedPrefix = keyPath.substring(0, tagEnds[level]) + '.';
+			}
+		}
+		if (!"".equals(value)) {
+			fireEvent(ParsingEvent.START_NODE, MarkupNode.TEXT, value, parent(count - 1));
+			fireEvent(ParsingEvent.END_NODE, MarkupNode.TEXT, value, parent(count - 1));
+		}
+		System.arraycopy(tagEnds, 0, ends, 0, count);
+		depth = count;
+		key = keyPath;
+	}
+
+	/**
+	 * Splits the key into tags, a segment followed by an index being a single tag.
+	 *
+	 * @return the number of tags.
+	 */
+	private int tags(String keyPath) {
+		int count = 0, start = 0;
+		for (;;) {
+			int end = segmentEnd(keyPath, start);
+			int tagEnd = end;
+			if (end < keyPath.length() && !isIndex(keyPath, start, end)) {
+				int next = segmentEnd(keyPath, end + 1);
+				if (isIndex(keyPath, end + 1, next)) {
+					tagEnd = next;
+				}
+			}
+			if (count == tagEnds.length) {
+				nameEnds = Arrays.copyOf(nameEnds, count << 1);
+				tagEnds = Arrays.copyOf(tagEnds, count << 1);
+			}
+			nameEnds[count] = end;
+			tagEnds[count++] = tagEnd;
+			if (tagEnd == keyPath.length()) { return count; }
+			start = tagEnd + 1;
+		}
+	}
+
+	/** @return the index of the first segment of the open tag in the last key. */
+	private int start(int level) {
+		return (level == 0)? 0: ends[level - 1] + 1;
+	}
+
+	private String parent(int level) {
+		return (level == 0)? null: names[level - 1];
+	}
+
+	private static int segmentEnd(String keyPath, int start) {
+		int end = keyPath.indexOf('.', start);
+		return (end == -1)? keyPath.length(): end;
+	}
+
+	/** @return true if the segment [start, end[ is a list index, made of decimal digits. */
+	private static boolean isIndex(String keyPath, int start, int end) {
+		if (start == end) { return false; }
+		for (int i = start; i < end; i++) {
+			char c = keyPath.charAt(i);
+			if (c < '0' || c > '9') { return false; }
+		}
+		return true;
+	}
+
+	private void end() {
+		for (int level = depth - 1; level >= 0; level--) {
+			fireEvent(ParsingEvent.END_NODE, MarkupNode.TAG, names[level], parent(level));
+			if (level > 0) {
+				fireEvent(ParsingEvent.END_NODE, MarkupNode.LIST, null, parent(level));
+			}
+		}
+		fireEvent(ParsingEvent.END_NODE, MarkupNode.LIST, null, null);
+	}
+
+	private void fireEvent(ParsingEvent event, MarkupNode nodeType, String value, String parent) {
+		dispatcher.fire(event, nodeType, value, parent);
+	}
+}
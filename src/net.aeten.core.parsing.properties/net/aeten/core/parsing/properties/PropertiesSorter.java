@@ -0,0 +1,321 @@
+package net.aeten.core.parsing.properties;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import net.aeten.core.parsing.ParsingException;
+
+/**
+ * Sorts the entries of a source by key, the last value of a key replacing the previous ones as with
+ * {@link java.util.Properties}. At most a run of entries is held in memory: when the source is longer, the sorted runs are
+ * spilled to temporary files, which are then merged.
+ * 
+ * The keys are in natural order, their runs of digits being compared as numbers so that the items of a list come in the order
+ * of their indexes. The keys under a prefix which ends with a dot still follow each other.
+ */
+class PropertiesSorter implements PropertiesEntries {
+	private static final int STREAM_BUFFER_SIZE = 16 * 1024;
+
+	private static final Comparator<String[]> BY_KEY = new Comparator<String[]>() {
+		@Override
+		public int compare(String[] entry1, String[] entry2) {
+			return compareKeys(entry1[0], entry2[0]);
+		}
+	};
+
+	private final PropertiesEntries source;
+	private final int runLength;
+	private boolean sorted = false;
+	private String key, value;
+
+	// Single run, sorted in memory
+	private String[][] entries;
+	private int count, index;
+
+	// Spilled runs, merged
+	private final List<Run> runs = new ArrayList<>();
+	private PriorityQueue<Run> merge;
+
+	PropertiesSorter(PropertiesEntries source, int runLength) {
+		this.source = source;
+		this.runLength = runLength;
+	}
+
+	@Override
+	public boolean next() throws ParsingException {
+		if (!sorted) {
+			sort();
+			sorted = true;
+		}
+		return (merge == null)? nextInMemory(): nextMerged();
+	}
+
+	@Override
+	public String key() {
+		return key;
+	}
+
+	@Override
+	public String value() {
+		return value;
+	}
+
+	@Override
+	public void close() {
+		source.close();
+		for (Run run : runs) {
+			run.close();
+		}
+		runs.clear();
+		entries = null;
+	}
+
+	/**
+	 * Reads the entries the source holds, spilling the sorted run each time it is full and another entry follows. A fed source
+	 * may thus be collected as its entries arrive, which bounds the memory held until its end.
+	 */
+	void collect() throws ParsingException {
+		if (entries == null) {
+			entries = new String[Math.min(runLength, 1024)][];
+		}
+		while (source.next()) {
+			if (count == runLength) {
+				sortRun();
+				spill();
+				count = 0;
+			}
+			add(source.key(), source.value());
+		}
+	}
+
+	/**
+	 * Reads the rest of the source, spilling the last run unless the source holds in one.
+	 */
+	private void sort() throws ParsingException {
+		collect();
+		sortRun();
+		if (count > 0 && !runs.isEmpty()) {
+			spill();
+		}
+		source.close();
+		if (!runs.isEmpty()) {
+			entries = null;
+			merge = new PriorityQueue<>(runs.size(), Run.ORDER);
+			for (Run run : runs) {
+				if (run.next()) {
+					merge.add(run);
+				}
+			}
+		}
+	}
+
+	private void sortRun() {
+		Arrays.sort(entries, 0, count, BY_KEY);
+		count = distinct();
+	}
+
+	private void add(String key, String value) {
+		if (count == entries.length) {
+			entries = Arrays.copyOf(entries, Math.min(count << 1, runLength));
+		}
+		entries[count++] = new String[] { key, value };
+	}
+
+	/**
+	 * Keeps the last of the entries of a key, the sort being stable.
+	 *
+	 * @return the number of distinct entries.
+	 */
+	private int distinct() {
+		int distinct = 0;
+		for (int i = 0; i < count; i++) {
+			if (distinct > 0 && entries[distinct - 1][0].equals(entries[i][0])) {
+				distinct--;
+			}
+			entries[distinct++] = entries[i];
+		}
+		return distinct;
+	}
+
+	private void spill() throws ParsingException {
+		Run run = null;
+		try {
+			run = new Run(runs.size(), Files.createTempFile("properties-run", ".tmp"));
+			runs.add(run);
+			try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run.file), STREAM_BUFFER_SIZE))) {
+				for (int i = 0; i < count; i++) {
+					write(output, entries[i][0]);
+					write(output, entries[i][1]);
+					entries[i] = null;
+				}
+			}
+			run.open();
+		} catch (IOException exception) {
+			close();
+			throw new ParsingException(exception);
+		}
+	}
+
+	private boolean nextInMemory() {
+		if (index == count) {
+			close();
+			return false;
+		}
+		key = entries[index][0];
+		value = entries[index][1];
+		entries[index++] = null;
+		return true;
+	}
+
+	/**
+	 * Takes the least key of the runs. If several runs hold it, the value is the one of the last run.
+	 */
+	private boolean nextMerged() throws ParsingException {
+		Run run = merge.poll();
+		if (run == null) {
+			close();
+			return false;
+		}
+		key = run.key;
+		value = run.value;
+		advance(run);
+		while (!merge.isEmpty() && merge.peek().key.equals(key)) {
+			run = merge.poll();
+			value = run.value;
+			advance(run);
+		}
+		return true;
+	}
+
+	private void advance(Run run) throws ParsingException {
+		if (run.next()) {
+			merge.add(run);
+		}
+	}
+
+	/**
+	 * Compares the keys character by character, except for their runs of digits which compare by value, then with the fewer
+	 * leading zeros first. Keys without digits are thus in the order of {@link String#compareTo(String)}.
+	 */
+	static int compareKeys(String key1, String key2) {
+		int length1 = key1.length(), length2 = key2.length();
+		int i1 = 0, i2 = 0;
+		while (i1 < length1 && i2 < length2) {
+			char c1 = key1.charAt(i1), c2 = key2.charAt(i2);
+			if (!isDigit(c1) || !isDigit(c2)) {
+				if (c1 != c2) { return c1 - c2; }
+				i1++;
+				i2++;
+				continue;
+			}
+			int start1 = i1, start2 = i2;
+			while (i1 < length1 && key1.charAt(i1) == '0') {
+				i1++;
+			}
+			while (i2 < length2 && key2.charAt(i2) == '0') {
+				i2++;
+			}
+			int significant1 = i1, significant2 = i2;
+			while (i1 < length1 && isDigit(key1.charAt(i1))) {
+				i1++;
+			}
+			while (i2 < length2 && isDigit(key2.charAt(i2))) {
+				i2++;
+			}
+			int comparison = Integer.compare(i1 - significant1, i2 - significant2);
+			for (int j = 0; comparison == 0 && j < i1 - significant1; j++) {
+				comparison = key1.charAt(significant1 + j) - key2.charAt(significant2 + j);
+			}
+			if (comparison == 0) {
+				comparison = Integer.compare(i1 - start1, i2 - start2);
+			}
+			if (comparison != 0) { return comparison; }
+		}
+		return (length1 - i1) - (length2 - i2);
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static void write(DataOutputStream output, String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	/**
+	 * Sorted run spilled to a temporary file, deleted once read.
+	 */
+	private static class Run {
+		/** By key, then by run order so that equal keys come in the order they were read. */
+		static final Comparator<Run> ORDER = new Comparator<Run>() {
+			@Override
+			public int compare(Run run1, Run run2) {
+				int comparison = compareKeys(run1.key, run2.key);
+				return (comparison != 0)? comparison: Integer.compare(run1.order, run2.order);
+			}
+		};
+
+		final int order;
+		final Path file;
+		private DataInputStream input;
+		String key, value;
+
+		Run(int order, Path file) {
+			this.order = order;
+			this.file = file;
+		}
+
+		void open() throws IOException {
+			input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), STREAM_BUFFER_SIZE));
+		}
+
+		boolean next() throws ParsingException {
+			try {
+				int length;
+				try {
+					length = input.readInt();
+				} catch (EOFException exception) {
+					close();
+					return false;
+				}
+				key = read(length);
+				value = read(input.readInt());
+				return true;
+			} catch (IOException exception) {
+				throw new ParsingException(exception);
+			}
+		}
+
+		private String read(int length) throws IOException {
+			byte[] bytes = new byte[length];
+			input.readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		void close() {
+			try {
+				if (input != null) {
+					input.close();
+					input = null;
+				}
+				Files.deleteIfExists(file);
+			} catch (IOException exception) {
+				file.toFile().deleteOnExit();
+			}
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package net.aeten.core.parsing.properties;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.util.Arrays;
+
+import net.aeten.core.parsing.ParsingException;
+
+/**
+ * Reads the entries of a properties file one by one, with the syntax of {@link java.util.Properties#load(Reader)}: comments,
+ * continuation lines, key separators and escapes.
+ *
+ * Without reader, the characters are fed by parts: an entry which is not complete yet is left for the next part to complete,
+ * its line being read again.
+ */
+class PropertiesTokenizer implements PropertiesEntries {
+	private final Reader reader;
+	private char[] buffer = new char[8192];
+	private int position = 0, limit = 0;
+	private boolean endOfInput;
+	// Logical line, continuations being joined
+	private char[] line = new char[256];
+	private int length;
+	private final StringBuilder text = new StringBuilder();
+	private String key, value;
+
+	PropertiesTokenizer(Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Tokenizer of fed characters.
+	 */
+	PropertiesTokenizer() {
+		this(null);
+	}
+
+	/**
+	 * Appends the decoded bytes to the characters left to read. The bytes of a character cut at the end of the buffer are left
+	 * in it, unless it is the end of input.
+	 */
+	void feed(ByteBuffer bytes, CharsetDecoder decoder, boolean endOfInput) {
+		System.arraycopy(buffer, position, buffer, 0, limit - position);
+		limit -= position;
+		position = 0;
+		for (;;) {
+			CharBuffer chars = CharBuffer.wrap(buffer, limit, buffer.length - limit);
+			CoderResult result = decoder.decode(bytes, chars, endOfInput);
+			if (!result.isOverflow() && endOfInput) {
+				result = decoder.flush(chars);
+			}
+			limit = chars.position();
+			if (!result.isOverflow()) {
+				break;
+			}
+			buffer = Arrays.copyOf(buffer, buffer.length << 1);
+		}
+		this.endOfInput = endOfInput;
+	}
+
+	/**
+	 * @return false at the end of input, or if the fed characters do not hold a complete entry.
+	 */
+	@Override
+	public boolean next() throws ParsingException {
+		if (!readLine()) { return false; }
+		int keyEnd = 0, valueStart = length;
+		boolean separator = false, backslash = false;
+		for (; keyEnd < length; keyEnd++) {
+			char c = line[keyEnd];
+			if (!backslash) {
+				if (c == '=' || c == ':') {
+					valueStart = keyEnd + 1;
+					separator = true;
+					break;
+				}
+				if (isBlank(c)) {
+					valueStart = keyEnd + 1;
+					break;
+				}
+			}
+			backslash = (c == '\\') && !backslash;
+		}
+		for (; valueStart < length; valueStart++) {
+			char c = line[valueStart];
+			if (!isBlank(c)) {
+				if (separator || (c != '=' && c != ':')) {
+					break;
+				}
+				separator = true;
+			}
+		}
+		key = unescape(0, keyEnd);
+		value = unescape(valueStart, length);
+		return true;
+	}
+
+	@Override
+	public String key() {
+		return key;
+	}
+
+	@Override
+	public String value() {
+		return value;
+	}
+
+	@Override
+	public void close() {}
+
+	/**
+	 * Reads the next logical line which is neither blank nor a comment. The line breaks escaped by a backslash are removed with
+	 * the blanks which follow them.
+	 *
+	 * @return false at the end of input, or if the fed characters do not hold a complete line.
+	 */
+	private boolean readLine() throws ParsingException {
+		length = 0;
+		int start = position;
+		boolean skipBlanks = true, lineStart = true, comment = false, continuation = false, backslash = false, skipLineFeed = false;
+		for (;;) {
+			if (position == limit && !fill()) {
+				if (!isComplete()) {
+					position = start;
+					return false;
+				}
+				if (length == 0 || comment) { return false; }
+				if (backslash) {
+					length--;
+				}
+				return true;
+			}
+			char c = buffer[position++];
+			if (skipLineFeed) {
+				skipLineFeed = false;
+				if (c == '\n') {
+					continue;
+				}
+			}
+			if (skipBlanks) {
+				if (isBlank(c) || (!continuation && (c == '\r' || c == '\n'))) {
+					continue;
+				}
+				skipBlanks = continuation = false;
+			}
+			if (lineStart) {
+				lineStart = false;
+				if (c == '#' || c == '!') {
+					comment = true;
+					continue;
+				}
+			}
+			if (c != '\n' && c != '\r') {
+				if (!comment) {
+					append(c);
+				}
+				backslash = (c == '\\') && !backslash;
+				continue;
+			}
+			if (comment || length == 0) {
+				comment = backslash = false;
+				lineStart = skipBlanks = true;
+				length = 0;
+				start = position;
+				continue;
+			}
+			if (!backslash) { return true; }
+			length--;
+			if (position == limit && !fill()) {
+				if (isComplete()) { return true; }
+				position = start;
+				return false;
+			}
+			skipBlanks = continuation = true;
+			backslash = false;
+			skipLineFeed = (c == '\r');
+		}
+	}
+
+	private void append(char c) {
+		if (length == line.length) {
+			char[] larger = new char[length << 1];
+			System.arraycopy(line, 0, larger, 0, length);
+			line = larger;
+		}
+		line[length++] = c;
+	}
+
+	/**
+	 * @return the characters of the line [start, end[ without their escapes.
+	 */
+	private String unescape(int start, int end) throws ParsingException {
+		int index = start;
+		while (index < end && line[index] != '\\') {
+			index++;
+		}
+		if (index == end) { return new String(line, start, end - start); }
+		text.setLength(0);
+		text.append(line, start, index - start);
+		while (index < end) {
+			char c = line[index++];
+			if (c != '\\' || index == end) {
+				text.append(c);
+				continue;
+			}
+			c = line[index++];
+			switch (c) {
+			case 'u':
+				if (index + 4 > end) { throw new ParsingException("Malformed \\uxxxx encoding", new String(line, 0, length), 0); }
+				int code = 0;
+				for (int i = 0; i < 4; i++) {
+					int digit = Character.digit(line[index++], 16);
+					if (digit == -1) { throw new ParsingException("Malformed \\uxxxx encoding", new String(line, 0, length), 0); }
+					code = (code << 4) + digit;
+				}
+				text.append((char) code);
+				break;
+			case 't':
+				text.append('\t');
+				break;
+			case 'r':
+				text.append('\r');
+				break;
+			case 'n':
+				text.append('\n');
+				break;
+			case 'f':
+				text.append('\f');
+				break;
+			default:
+				text.append(c);
+				break;
+			}
+		}
+		return text.toString();
+	}
+
+	/**
+	 * @return false if the characters read so far may be followed by others yet to be fed.
+	 */
+	private boolean isComplete() {
+		return reader != null || endOfInput;
+	}
+
+	private boolean fill() throws ParsingException {
+		if (reader == null) { return false; }
+		try {
+			int read;
+			do {
+				read = reader.read(buffer);
+			} while (read == 0);
+			if (read == -1) { return false; }
+			position = 0;
+			limit = read;
+			return true;
+		} catch (IOException exception) {
+			throw new ParsingException(exception);
+		}
+	}
+
+	private static boolean isBlank(char c) {
+		return c == ' ' || c == '\t' || c == '\f';
+	}
+}
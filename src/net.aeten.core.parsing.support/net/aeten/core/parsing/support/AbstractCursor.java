@@ -0,0 +1,80 @@
+package net.aeten.core.parsing.support;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingEvent;
+import net.aeten.core.parsing.ParsingException;
+
+/**
+ * Cursor over a parser which fires the events of its input step by step. The events of a step are queued by the
+ * {@link #dispatcher} and the next step is only run once they have all been pulled.
+ */
+public abstract class AbstractCursor implements ParsingCursor {
+	private final Queue<ParsingData<MarkupNode>> pending = new ArrayDeque<>();
+	protected final Handler<ParsingData<MarkupNode>> handler = new Handler<ParsingData<MarkupNode>>() {
+		@Override
+		public void handleEvent(ParsingData<MarkupNode> data) {
+			pending.add(data);
+		}
+	};
+	protected final EventDispatcher dispatcher;
+	private ParsingData<MarkupNode> last = null;
+	private int depth = 0;
+	private boolean closed = false;
+
+	protected AbstractCursor(Parser<MarkupNode> source) {
+		dispatcher = new EventDispatcher(source, handler);
+	}
+
+	/**
+	 * Fires the events of the next step of the parse through the {@link #dispatcher}, possibly none.
+	 *
+	 * @return false once the input is exhausted.
+	 */
+	protected abstract boolean step() throws ParsingException;
+
+	/**
+	 * Releases the resources of the parse, once closed.
+	 */
+	protected void release() throws ParsingException {}
+
+	@Override
+	public ParsingData<MarkupNode> next() throws ParsingException {
+		while (pending.isEmpty()) {
+			if (closed || !step()) { return last = null; }
+		}
+		last = pending.poll();
+		depth += (last.getEvent() == ParsingEvent.START_NODE)? 1: -1;
+		return last;
+	}
+
+	@Override
+	public void skipChildren() throws ParsingException {
+		if (last == null || last.getEvent() != ParsingEvent.START_NODE) { return; }
+		int openNodes = 1;
+		for (ParsingData<MarkupNode> data; (data = pending.peek()) != null; pending.poll()) {
+			if (data.getEvent() == ParsingEvent.START_NODE) {
+				openNodes++;
+			} else if (--openNodes == 0) { return; }
+		}
+		dispatcher.skip(openNodes);
+	}
+
+	@Override
+	public int currentDepth() {
+		return depth;
+	}
+
+	@Override
+	public void close() throws ParsingException {
+		if (closed) { return; }
+		closed = true;
+		pending.clear();
+		release();
+	}
+}
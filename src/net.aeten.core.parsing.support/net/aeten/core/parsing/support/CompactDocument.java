@@ -0,0 +1,345 @@
+package net.aeten.core.parsing.support;
+
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingEvent;
+import net.aeten.core.parsing.ParsingException;
+
+/**
+ * Tree of the nodes of a parse, held in flat arrays instead of one object by node. A node is an index: its kind, its parent,
+ * first child and next sibling are array cells, and its value is a range of a character buffer shared by the whole tree.
+ * {@link MarkupNode#TYPE TYPE} events are not nodes: their value is the type of the node which follows them.
+ *
+ * The tree is navigated through {@link Node} views, built on demand and holding nothing but their index.
+ */
+public class CompactDocument {
+	private static final MarkupNode[] KINDS = MarkupNode.values();
+	private static final int NONE = -1;
+
+	private byte[] kinds = new byte[256];
+	private int[] parents = new int[256], firstChildren = new int[256], nextSiblings = new int[256];
+	private int[] valueStarts = new int[256], valueEnds = new int[256];
+	private short[] types = new short[256];
+	private char[] chars = new char[4096];
+	private String[] typeNames = new String[16];
+	private int count = 0, length = 0, typeCount = 0;
+
+	private CompactDocument() {}
+
+	/**
+	 * Parses the input into a compact tree. The events are taken without copy from parsers honouring
+	 * {@link ReusedDataHandler}.
+	 */
+	public static CompactDocument load(Reader reader, Parser<MarkupNode> parser) throws ParsingException {
+		Builder builder = builder();
+		parser.parse(reader, builder);
+		return builder.build();
+	}
+
+	/**
+	 * @return a handler building a document from the events of a parse, for the inputs other than a {@link Reader}.
+	 */
+	public static Builder builder() {
+		return new CompactDocument().new Builder();
+	}
+
+	/**
+	 * @return the root of the tree, without type nor value, whose children are the top level nodes of the parse.
+	 */
+	public Node getRoot() {
+		return new Node(0);
+	}
+
+	/**
+	 * @return the number of nodes, the root included.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * View over a node of the tree.
+	 */
+	public class Node {
+		private final int index;
+		private List<Node> children;
+
+		private Node(int index) {
+			this.index = index;
+		}
+
+		/**
+		 * @return the kind of the node, null for the root.
+		 */
+		public MarkupNode getNodeType() {
+			return (kinds[index] == NONE)? null: KINDS[kinds[index]];
+		}
+
+		/**
+		 * @return the type given by the {@link MarkupNode#TYPE TYPE} event which preceded the node, null if none.
+		 */
+		public String getType() {
+			return (types[index] == NONE)? null: typeNames[types[index]];
+		}
+
+		/**
+		 * @return the value of the node, built as a new {@link String}.
+		 */
+		public String getValue() {
+			return (valueStarts[index] == NONE)? null: new String(chars, valueStarts[index], valueEnds[index] - valueStarts[index]);
+		}
+
+		/**
+		 * @return the value of the node without copy.
+		 */
+		public CharSequence getText() {
+			return (valueStarts[index] == NONE)? null: CharBuffer.wrap(chars, valueStarts[index], valueEnds[index] - valueStarts[index]).asReadOnlyBuffer();
+		}
+
+		/**
+		 * @return the parent, null for the root.
+		 */
+		public Node getParent() {
+			return (index == 0)? null: new Node(parents[index]);
+		}
+
+		/**
+		 * @return the children, as a view whose sequential access is constant time.
+		 */
+		public List<Node> getChildren() {
+			if (children == null) {
+				children = new Children(index);
+			}
+			return children;
+		}
+
+		/**
+		 * @return the items of a {@link MarkupNode#LIST LIST} node.
+		 * @throws IllegalStateException if the node is not a list.
+		 */
+		public List<Node> asSequence() {
+			if (getNodeType() != MarkupNode.LIST) { throw new IllegalStateException(getNodeType() + " is not a sequence"); }
+			return getChildren();
+		}
+
+		/**
+		 * @return the key and value of a {@link MarkupNode#TAG TAG} node. The key is the value of the tag if it has one, its
+		 *         first child otherwise; the value is the first child following the key, null if none.
+		 * @throws IllegalStateException if the node is not a tag.
+		 */
+		public MappingEntry asMappingEntry() {
+			if (getNodeType() != MarkupNode.TAG) { throw new IllegalStateException(getNodeType() + " is not a mapping entry"); }
+			int child = firstChildren[index];
+			if (valueStarts[index] != NONE) { return new MappingEntry(getValue(), node(child)); }
+			if (child == NONE) { return new MappingEntry(null, null); }
+			return new MappingEntry(new Node(child).getValue(), node(nextSiblings[child]));
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			return (object instanceof Node) && ((Node) object).index == index && ((Node) object).document() == CompactDocument.this;
+		}
+
+		@Override
+		public int hashCode() {
+			return index;
+		}
+
+		@Override
+		public String toString() {
+			return getNodeType() + ((getType() == null)? "": (" !" + getType())) + ((getValue() == null)? "": (" \"" + getValue() + "\""));
+		}
+
+		private CompactDocument document() {
+			return CompactDocument.this;
+		}
+	}
+
+	/**
+	 * Key of a tag and node of its value.
+	 */
+	public static class MappingEntry {
+		private final String key;
+		private final Node value;
+
+		MappingEntry(String key, Node value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public Node getValue() {
+			return value;
+		}
+	}
+
+	private Node node(int index) {
+		return (index == NONE)? null: new Node(index);
+	}
+
+	/**
+	 * Children of a node, following the sibling links from the last accessed one.
+	 */
+	private class Children extends AbstractList<Node> {
+		private final int parent;
+		private int size = NONE;
+		private int cursor, cursorIndex = NONE;
+
+		Children(int parent) {
+			this.parent = parent;
+		}
+
+		@Override
+		public Node get(int position) {
+			if (position < 0) { throw new IndexOutOfBoundsException(Integer.toString(position)); }
+			if (cursorIndex == NONE || position < cursor) {
+				cursor = 0;
+				cursorIndex = firstChildren[parent];
+			}
+			while (cursor < position && cursorIndex != NONE) {
+				cursorIndex = nextSiblings[cursorIndex];
+				cursor++;
+			}
+			if (cursorIndex == NONE) { throw new IndexOutOfBoundsException(Integer.toString(position)); }
+			return new Node(cursorIndex);
+		}
+
+		@Override
+		public int size() {
+			if (size == NONE) {
+				size = 0;
+				for (int child = firstChildren[parent]; child != NONE; child = nextSiblings[child]) {
+					size++;
+				}
+			}
+			return size;
+		}
+	}
+
+	private int add(MarkupNode kind, int parent, int type) {
+		if (count == kinds.length) {
+			int capacity = count << 1;
+			kinds = Arrays.copyOf(kinds, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+			firstChildren = Arrays.copyOf(firstChildren, capacity);
+			nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+			valueStarts = Arrays.copyOf(valueStarts, capacity);
+			valueEnds = Arrays.copyOf(valueEnds, capacity);
+			types = Arrays.copyOf(types, capacity);
+		}
+		kinds[count] = (kind == null)? NONE: (byte) kind.ordinal();
+		parents[count] = parent;
+		firstChildren[count] = nextSiblings[count] = valueStarts[count] = NONE;
+		types[count] = (short) type;
+		return count++;
+	}
+
+	private void value(int node, CharSequence value) {
+		if (value == null) { return; }
+		int valueLength = value.length();
+		if (length + valueLength > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(chars.length << 1, length + valueLength));
+		}
+		for (int i = 0; i < valueLength; i++) {
+			chars[length + i] = value.charAt(i);
+		}
+		valueStarts[node] = length;
+		length += valueLength;
+		valueEnds[node] = length;
+	}
+
+	private void trim() {
+		kinds = Arrays.copyOf(kinds, count);
+		parents = Arrays.copyOf(parents, count);
+		firstChildren = Arrays.copyOf(firstChildren, count);
+		nextSiblings = Arrays.copyOf(nextSiblings, count);
+		valueStarts = Arrays.copyOf(valueStarts, count);
+		valueEnds = Arrays.copyOf(valueEnds, count);
+		types = Arrays.copyOf(types, count);
+		chars = Arrays.copyOf(chars, length);
+		typeNames = Arrays.copyOf(typeNames, typeCount);
+	}
+
+	/**
+	 * Appends the nodes of the events, in the reused event mode.
+	 */
+	public class Builder implements ReusedDataHandler {
+		private final Map<String, Integer> typeIndexes = new HashMap<>();
+		// Open nodes and their last child
+		private int[] open = new int[64], lastChildren = new int[64];
+		private int depth = 0;
+		private int type = NONE;
+
+		private Builder() {
+			open[0] = add(null, NONE, NONE);
+			lastChildren[0] = NONE;
+		}
+
+		/**
+		 * @return the document, once the parse is over.
+		 */
+		public CompactDocument build() {
+			trim();
+			return CompactDocument.this;
+		}
+
+		@Override
+		public void handleEvent(ParsingData<MarkupNode> data) {
+			if (data.getNodeType() == MarkupNode.TYPE) {
+				if (data.getEvent() == ParsingEvent.START_NODE) {
+					type = type(data.getValue());
+				}
+				return;
+			}
+			if (data.getEvent() != ParsingEvent.START_NODE) {
+				if (depth > 0) {
+					depth--;
+				}
+				return;
+			}
+			int parent = open[depth];
+			int node = add(data.getNodeType(), parent, type);
+			type = NONE;
+			value(node, MarkupData.getText(data));
+			if (lastChildren[depth] == NONE) {
+				firstChildren[parent] = node;
+			} else {
+				nextSiblings[lastChildren[depth]] = node;
+			}
+			lastChildren[depth] = node;
+			if (++depth == open.length) {
+				open = Arrays.copyOf(open, depth << 1);
+				lastChildren = Arrays.copyOf(lastChildren, depth << 1);
+			}
+			open[depth] = node;
+			lastChildren[depth] = NONE;
+		}
+
+		private int type(String name) {
+			if (name == null) { return NONE; }
+			Integer index = typeIndexes.get(name);
+			if (index == null) {
+				if (typeCount == Short.MAX_VALUE) { throw new IllegalStateException("Too many types"); }
+				if (typeCount == typeNames.length) {
+					typeNames = Arrays.copyOf(typeNames, typeCount << 1);
+				}
+				typeNames[typeCount] = name;
+				index = typeCount++;
+				typeIndexes.put(name, index);
+			}
+			return index;
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package net.aeten.core.parsing.support;
+
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+
+/**
+ * Parser telling the configuration its events depend on, so that the results of two instances can be shared.
+ */
+public interface ConfiguredParser extends Parser<MarkupNode> {
+	/**
+	 * @return a value equal to the configuration of any instance of the same class firing the same events for the same input,
+	 *         null if the class has no configuration.
+	 */
+	Object getConfiguration();
+}
@@ -0,0 +1,28 @@
+package net.aeten.core.parsing.support;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.ParsingData;
+
+/**
+ * Handler steering the parse through the {@link Signal} it returns for each event. The events of a skipped subtree are not
+ * built, and parsers skip as much of their input as they can. A stopped parse returns without reading further.
+ */
+public abstract class ControlledHandler implements Handler<ParsingData<MarkupNode>> {
+	public static enum Signal {
+		CONTINUE,
+		/** Skips the children of the node started by the event, whose end is the next event. Same as CONTINUE for an end. */
+		SKIP_SUBTREE,
+		STOP
+	}
+
+	public abstract Signal handle(ParsingData<MarkupNode> data);
+
+	/**
+	 * Handles the event, ignoring the signal.
+	 */
+	@Override
+	public final void handleEvent(ParsingData<MarkupNode> data) {
+		handle(data);
+	}
+}
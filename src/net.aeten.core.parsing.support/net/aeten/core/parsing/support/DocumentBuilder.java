@@ -0,0 +1,29 @@
+package net.aeten.core.parsing.support;
+
+import java.io.Reader;
+
+import net.aeten.core.parsing.Document;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingException;
+
+/**
+ * Way to load a {@link Document}: its {@link Document.Node} or its {@link Document.Element} tree.
+ */
+interface DocumentBuilder<T> {
+	DocumentBuilder<Document.Node> NODES = new DocumentBuilder<Document.Node>() {
+		@Override
+		public Document<Document.Node> load(Reader reader, Parser<MarkupNode> parser) throws ParsingException {
+			return Document.loadNodes(reader, parser);
+		}
+	};
+
+	DocumentBuilder<Document.Element> ELEMENTS = new DocumentBuilder<Document.Element>() {
+		@Override
+		public Document<Document.Element> load(Reader reader, Parser<MarkupNode> parser) throws ParsingException {
+			return Document.loadElements(reader, parser);
+		}
+	};
+
+	Document<T> load(Reader reader, Parser<MarkupNode> parser) throws ParsingException;
+}
@@ -0,0 +1,210 @@
+package net.aeten.core.parsing.support;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import net.aeten.core.parsing.Document;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingException;
+
+/**
+ * Documents loaded from files, kept while their file is unchanged. A file is known unchanged when its size and modification
+ * time are those it had when loaded, so that a hit costs a single read of its attributes. The least recently used documents
+ * are evicted once the estimated bytes they retain exceed the bound of the cache.
+ *
+ * A document is cached for the class and the configuration of the parser which loaded it, as told by a
+ * {@link ConfiguredParser}: another instance configured alike is served the same document. The documents of other parsers
+ * are cached for the parser instance. Loading a changed file drops its documents loaded by other parsers, which are stale.
+ * The cached documents are shared by all the callers, which must not modify them. An instance is thread-safe; two threads
+ * missing the same document may both load it.
+ */
+public class DocumentCache {
+	/** Estimated bytes retained by a document for each byte of its file. */
+	public static final int RETAINED_BYTES_PER_FILE_BYTE = 10;
+
+	private final long maxRetainedBytes;
+	private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long retainedBytes = 0;
+	private long hits = 0, misses = 0, evictions = 0;
+
+	/**
+	 * @param maxRetainedBytes bound of the estimated bytes retained by the cached documents.
+	 */
+	public DocumentCache(long maxRetainedBytes) {
+		if (maxRetainedBytes < 0) { throw new IllegalArgumentException("Bound must not be negative: " + maxRetainedBytes); }
+		this.maxRetainedBytes = maxRetainedBytes;
+	}
+
+	/**
+	 * Same as {@link Document#loadNodes(Reader, Parser)} on the UTF-8 encoded file, unless it is cached.
+	 */
+	public Document<Document.Node> loadNodes(Path path, Parser<MarkupNode> parser) throws ParsingException {
+		return load(path, parser, DocumentBuilder.NODES);
+	}
+
+	/**
+	 * Same as {@link Document#loadElements(Reader, Parser)} on the UTF-8 encoded file, unless it is cached.
+	 */
+	public Document<Document.Element> loadElements(Path path, Parser<MarkupNode> parser) throws ParsingException {
+		return load(path, parser, DocumentBuilder.ELEMENTS);
+	}
+
+	/**
+	 * Removes the documents of the file.
+	 */
+	public synchronized void invalidate(Path path) {
+		Path file = path.toAbsolutePath().normalize();
+		for (Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator(); iterator.hasNext();) {
+			Map.Entry<Key, Entry> entry = iterator.next();
+			if (entry.getKey().path.equals(file)) {
+				retainedBytes -= entry.getValue().retainedBytes;
+				iterator.remove();
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		retainedBytes = 0;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return the estimated bytes retained by the cached documents.
+	 */
+	public synchronized long getRetainedBytes() {
+		return retainedBytes;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	@SuppressWarnings("unchecked")
+	<T> Document<T> load(Path path, Parser<MarkupNode> parser, DocumentBuilder<T> builder) throws ParsingException {
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (IOException exception) {
+			throw new ParsingException(exception);
+		}
+		Key key = new Key(path.toAbsolutePath().normalize(), parser, builder);
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null && entry.size == attributes.size() && entry.modified.equals(attributes.lastModifiedTime())) {
+				hits++;
+				return (Document<T>) entry.document;
+			}
+			misses++;
+			if (entry != null) {
+				entries.remove(key);
+				retainedBytes -= entry.retainedBytes;
+			}
+		}
+		Document<T> document;
+		try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			document = builder.load(reader, parser);
+		} catch (IOException exception) {
+			throw new ParsingException(exception);
+		}
+		// Attributes read before the file: if it changes meanwhile, the next load sees it
+		Entry entry = new Entry(document, attributes.size(), attributes.lastModifiedTime());
+		synchronized (this) {
+			removeStale(key, entry);
+			if (entry.retainedBytes <= maxRetainedBytes) {
+				entries.put(key, entry);
+				retainedBytes += entry.retainedBytes;
+				evict();
+			}
+		}
+		return document;
+	}
+
+	/**
+	 * Removes the entry of the key and the documents of the file loaded by the builder before it changed.
+	 */
+	private void removeStale(Key key, Entry entry) {
+		for (Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator(); iterator.hasNext();) {
+			Map.Entry<Key, Entry> cached = iterator.next();
+			Key other = cached.getKey();
+			Entry previous = cached.getValue();
+			if (other.equals(key) || (other.path.equals(key.path) && other.builder == key.builder && (previous.size != entry.size || !previous.modified.equals(entry.modified)))) {
+				retainedBytes -= previous.retainedBytes;
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Evicts the least recently used documents until the retained bytes are within the bound.
+	 */
+	private void evict() {
+		for (Iterator<Entry> iterator = entries.values().iterator(); retainedBytes > maxRetainedBytes && iterator.hasNext();) {
+			retainedBytes -= iterator.next().retainedBytes;
+			iterator.remove();
+			evictions++;
+		}
+	}
+
+	private static class Key {
+		final Path path;
+		final Class<?> parserClass;
+		/** Configuration of a {@link ConfiguredParser}, the parser itself otherwise. */
+		final Object configuration;
+		final DocumentBuilder<?> builder;
+
+		Key(Path path, Parser<MarkupNode> parser, DocumentBuilder<?> builder) {
+			this.path = path;
+			this.parserClass = parser.getClass();
+			this.configuration = (parser instanceof ConfiguredParser)? ((ConfiguredParser) parser).getConfiguration(): parser;
+			this.builder = builder;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof Key)) { return false; }
+			Key key = (Key) object;
+			return path.equals(key.path) && parserClass == key.parserClass && Objects.equals(configuration, key.configuration) && builder == key.builder;
+		}
+
+		@Override
+		public int hashCode() {
+			return ((path.hashCode() * 31 + parserClass.hashCode()) * 31 + Objects.hashCode(configuration)) * 31 + builder.hashCode();
+		}
+	}
+
+	private static class Entry {
+		final Document<?> document;
+		final long size;
+		final FileTime modified;
+		final long retainedBytes;
+
+		Entry(Document<?> document, long size, FileTime modified) {
+			this.document = document;
+			this.size = size;
+			this.modified = modified;
+			this.retainedBytes = size * RETAINED_BYTES_PER_FILE_BYTE;
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package net.aeten.core.parsing.support;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.aeten.core.Format;
+import net.aeten.core.parsing.Document;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingException;
+
+/**
+ * Loads many files concurrently, on a bounded number of threads. The parser of a file is the {@link Parser} provider whose
+ * {@link Format} is the extension of its name, ignoring case; the {@link #EXTENSION_FORMATS aliases} of a format name it too,
+ * such as "yml" for "yaml". The threads share the provider of each format, a parse keeping its state in
+ * its own implementation and the XML parser pooling its SAX parsers for all of them. Given a {@link DocumentCache}, the
+ * loader takes the unchanged files from it, whatever thread loaded them.
+ */
+public class DocumentLoader implements AutoCloseable {
+	private static final AtomicInteger THREADS = new AtomicInteger();
+	/** Formats of the extensions which are not the name of their format. */
+	public static final Map<String, String> EXTENSION_FORMATS = Collections.singletonMap("yml", "yaml");
+
+	/**
+	 * Document loaded from a file, with the time spent reading and parsing it.
+	 */
+	public static class Loaded<T> {
+		public final Path path;
+		public final Document<T> document;
+		public final long nanoseconds;
+
+		Loaded(Path path, Document<T> document, long nanoseconds) {
+			this.path = path;
+			this.document = document;
+			this.nanoseconds = nanoseconds;
+		}
+	}
+
+	private final Map<String, Parser<MarkupNode>> formats = new HashMap<>();
+	private final ExecutorService executor;
+	private final DocumentCache cache;
+
+	/**
+	 * Loads with the parser providers of the context class loader.
+	 */
+	public DocumentLoader(int parallelism) {
+		this(parallelism, Thread.currentThread().getContextClassLoader(), null);
+	}
+
+	/**
+	 * Loads with the parser providers of the context class loader, through the cache.
+	 */
+	public DocumentLoader(int parallelism, DocumentCache cache) {
+		this(parallelism, Thread.currentThread().getContextClassLoader(), cache);
+	}
+
+	public DocumentLoader(int parallelism, ClassLoader classLoader) {
+		this(parallelism, classLoader, null);
+	}
+
+	/**
+	 * @param cache the cache of the documents, null for none.
+	 */
+	@SuppressWarnings("unchecked")
+	public DocumentLoader(int parallelism, ClassLoader classLoader, DocumentCache cache) {
+		if (parallelism < 1) { throw new IllegalArgumentException("Parallelism must be positive: " + parallelism); }
+		for (Parser<?> parser : ServiceLoader.load(Parser.class, classLoader)) {
+			Format format = parser.getClass().getAnnotation(Format.class);
+			if (format != null && !formats.containsKey(format.value())) {
+				formats.put(format.value(), (Parser<MarkupNode>) parser);
+			}
+		}
+		this.cache = cache;
+		executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "document-loader-" + THREADS.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @return the loading of every file as a {@link Document.Node} tree, in the order of the paths, a path given several times
+	 *         being loaded once.
+	 */
+	public Map<Path, Future<Loaded<Document.Node>>> loadNodes(Collection<Path> paths) {
+		return load(paths, DocumentBuilder.NODES);
+	}
+
+	/**
+	 * @return the loading of every file as a {@link Document.Element} tree, in the order of the paths, a path given several
+	 *         times being loaded once.
+	 */
+	public Map<Path, Future<Loaded<Document.Element>>> loadElements(Collection<Path> paths) {
+		return load(paths, DocumentBuilder.ELEMENTS);
+	}
+
+	/**
+	 * Stops the threads once the submitted files are loaded.
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	private <T> Map<Path, Future<Loaded<T>>> load(Collection<Path> paths, final DocumentBuilder<T> builder) {
+		Map<Path, Future<Loaded<T>>> loading = new LinkedHashMap<>();
+		for (final Path path : paths) {
+			if (loading.containsKey(path)) {
+				continue;
+			}
+			loading.put(path, executor.submit(new Callable<Loaded<T>>() {
+				@Override
+				public Loaded<T> call() throws ParsingException {
+					long start = System.nanoTime();
+					Parser<MarkupNode> parser = parser(path);
+					if (cache != null) { return new Loaded<>(path, cache.load(path, parser, builder), System.nanoTime() - start); }
+					try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+						Document<T> document = builder.load(reader, parser);
+						return new Loaded<>(path, document, System.nanoTime() - start);
+					} catch (IOException exception) {
+						throw new ParsingException(exception);
+					}
+				}
+			}));
+		}
+		return loading;
+	}
+
+	/**
+	 * @return the parser of the format given by the extension of the file.
+	 */
+	private Parser<MarkupNode> parser(Path path) throws ParsingException {
+		String name = path.getFileName().toString();
+		String extension = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+		String format = EXTENSION_FORMATS.get(extension);
+		Parser<MarkupNode> parser = formats.get((format == null)? extension: format);
+		if (parser == null) { throw new ParsingException("No parser for the format of " + path, name, 0); }
+		return parser;
+	}
+}
@@ -0,0 +1,139 @@
+package net.aeten.core.parsing.support;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingEvent;
+
+/**
+ * Delivers the events of one parse to its handler. A new {@link ParsingData} is built for each event unless the handler is a
+ * {@link ReusedDataHandler}, in which case a single {@link MarkupData} is reset and passed for every event. In that mode the
+ * values given as character ranges are not copied until the handler asks for a {@link String}.
+ * 
+ * The dispatcher can also {@link #skip(int) skip} the end of a subtree, dropping its events before any data is built, and
+ * honours the signals of a {@link ControlledHandler}. Given the recorder of a {@link MeteredParser}, it delivers to the
+ * recorded handler, counting and timing the events.
+ */
+public class EventDispatcher {
+	protected final Parser<MarkupNode> source;
+	protected final Handler<ParsingData<MarkupNode>> handler;
+	private final MarkupData reused;
+	private final ControlledHandler controlled;
+	private final MeteredParser.Recorder recorder;
+	private int skipped = 0;
+	private boolean stopped = false;
+
+	public EventDispatcher(Parser<MarkupNode> source, Handler<ParsingData<MarkupNode>> handler) {
+		this.source = source;
+		this.recorder = (handler instanceof MeteredParser.Recorder)? (MeteredParser.Recorder) handler: null;
+		handler = (recorder == null)? handler: recorder.handler;
+		this.handler = handler;
+		this.reused = (handler instanceof ReusedDataHandler)? new MarkupData(source): null;
+		this.controlled = (handler instanceof ControlledHandler)? (ControlledHandler) handler: null;
+	}
+
+	/**
+	 * Drops the following events up to the end of the given number of open nodes, this last end being fired.
+	 */
+	public void skip(int openNodes) {
+		skipped = openNodes;
+	}
+
+	/**
+	 * @return true while the events are dropped. Parsers may then skip the input they know to be part of the skipped subtree.
+	 */
+	public boolean isSkipping() {
+		return skipped > 0;
+	}
+
+	/**
+	 * @return true once the handler has asked to stop, all the following events being dropped. Parsers should then stop.
+	 */
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	public void fire(ParsingEvent event, MarkupNode nodeType, String value, String parent) {
+		if (stopped) { return; }
+		if (skipped > 0) {
+			if (event == ParsingEvent.START_NODE) {
+				skipped++;
+				return;
+			}
+			if (--skipped > 0) { return; }
+		}
+		deliver((reused == null)? new ParsingData<MarkupNode>(source, event, nodeType, value, parent): reused.set(event, nodeType, value, parent));
+	}
+
+	/**
+	 * Fires the start and the end of a node without children.
+	 */
+	public void fireLeaf(MarkupNode nodeType, String value, String parent) {
+		if (stopped || skipped > 0) { return; }
+		fire(ParsingEvent.START_NODE, nodeType, value, parent);
+		fire(ParsingEvent.END_NODE, nodeType, value, parent);
+	}
+
+	/**
+	 * Fires the start and the end of a node without children whose value is the range [start, end[ of the given characters.
+	 */
+	public void fireLeaf(MarkupNode nodeType, char[] chars, int start, int end, String parent) {
+		if (stopped || skipped > 0) { return; }
+		if (reused == null) {
+			fireLeaf(nodeType, new String(chars, start, end - start), parent);
+		} else {
+			deliver(reused.set(ParsingEvent.START_NODE, nodeType, chars, start, end, parent));
+			endLeaf();
+		}
+	}
+
+	/**
+	 * Fires the start and the end of a node without children whose value is the range [start, end[ of the given sequence.
+	 */
+	public void fireLeaf(MarkupNode nodeType, CharSequence sequence, int start, int end, String parent) {
+		if (stopped || skipped > 0) { return; }
+		if (reused == null) {
+			fireLeaf(nodeType, sequence.subSequence(start, end).toString(), parent);
+		} else {
+			deliver(reused.set(ParsingEvent.START_NODE, nodeType, sequence, start, end, parent));
+			endLeaf();
+		}
+	}
+
+	/** Fires the end of the leaf whose start was just delivered, unless the parse was stopped. */
+	private void endLeaf() {
+		if (stopped) { return; }
+		skipped = 0;
+		deliver(reused.set(ParsingEvent.END_NODE));
+	}
+
+	private void deliver(ParsingData<MarkupNode> data) {
+		if (recorder == null) {
+			signal(data);
+		} else {
+			recorder.started(data);
+			signal(data);
+			recorder.handled();
+		}
+	}
+
+	private void signal(ParsingData<MarkupNode> data) {
+		if (controlled == null) {
+			handler.handleEvent(data);
+			return;
+		}
+		switch (controlled.handle(data)) {
+		case SKIP_SUBTREE:
+			if (data.getEvent() == ParsingEvent.START_NODE) {
+				skipped = 1;
+			}
+			break;
+		case STOP:
+			stopped = true;
+			break;
+		default:
+			break;
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package net.aeten.core.parsing.support;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingEvent;
+import net.aeten.core.parsing.ParsingException;
+
+/**
+ * Events of a parse saved in a binary form, replayed without reading the text again. The snapshot is made of a header, the
+ * magic number and the version, a table of the distinct strings of the events, then the events. An event is a byte holding
+ * its kind, node type and which of value and parent it has, followed by the indexes in the table of those it has. The numbers
+ * are unsigned variable-length integers, seven bits by byte.
+ *
+ * A snapshot is read from a buffer, typically a memory-mapped file. Loading only reads the lengths of the strings, which are
+ * decoded from the buffer when first replayed.
+ */
+public class EventSnapshot {
+	public static final int MAGIC = 0x41455053;
+	public static final int VERSION = 1;
+
+	private static final MarkupNode[] NODE_TYPES = MarkupNode.values();
+	private static final ParsingEvent[] EVENTS = ParsingEvent.values();
+	private static final int END = 0x01, VALUE = 0x40, PARENT = 0x80;
+	private static final int NODE_TYPE_SHIFT = 1, NODE_TYPE_MASK = 0x1F;
+
+	private final ByteBuffer buffer;
+	/** Bounds of the strings in the buffer. */
+	private final int[] stringStarts, stringEnds;
+	private final String[] strings;
+	private final int eventsStart;
+
+	private EventSnapshot(ByteBuffer buffer) throws ParsingException {
+		this.buffer = buffer;
+		if (buffer.remaining() < 5 || buffer.getInt() != MAGIC) { throw new ParsingException("Not an event snapshot", null, 0); }
+		int version = buffer.get();
+		if (version != VERSION) { throw new ParsingException("Unsupported event snapshot version " + version, null, 0); }
+		int count = readNumber(buffer);
+		stringStarts = new int[count];
+		stringEnds = new int[count];
+		strings = new String[count];
+		for (int i = 0; i < count; i++) {
+			int length = readNumber(buffer);
+			stringStarts[i] = buffer.position();
+			stringEnds[i] = stringStarts[i] + length;
+			buffer.position(stringEnds[i]);
+		}
+		eventsStart = buffer.position();
+	}
+
+	/**
+	 * Reads a snapshot from the buffer position to its limit, the buffer being kept for the replays.
+	 */
+	public static EventSnapshot load(ByteBuffer buffer) throws ParsingException {
+		try {
+			return new EventSnapshot(buffer.slice());
+		} catch (RuntimeException exception) {
+			throw new ParsingException(exception);
+		}
+	}
+
+	/**
+	 * Reads a snapshot file, memory-mapped.
+	 */
+	public static EventSnapshot load(Path path) throws ParsingException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) { throw new ParsingException("File larger than a mapping", path.toString(), 0); }
+			return load(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+		} catch (IOException exception) {
+			throw new ParsingException(exception);
+		}
+	}
+
+	/**
+	 * Fires the events to the handler, as parsed by the source.
+	 */
+	public void replay(Parser<MarkupNode> source, Handler<ParsingData<MarkupNode>> handler) throws ParsingException {
+		EventDispatcher dispatcher = new EventDispatcher(source, handler);
+		ByteBuffer events = buffer.duplicate(), table = buffer.duplicate();
+		events.position(eventsStart);
+		try {
+			while (events.hasRemaining() && !dispatcher.isStopped()) {
+				int header = events.get() & 0xFF;
+				int nodeType = (header >>> NODE_TYPE_SHIFT) & NODE_TYPE_MASK;
+				String value = ((header & VALUE) == 0)? null: string(readNumber(events), table);
+				String parent = ((header & PARENT) == 0)? null: string(readNumber(events), table);
+				dispatcher.fire(EVENTS[header & END], (nodeType == 0)? null: NODE_TYPES[nodeType - 1], value, parent);
+			}
+		} catch (RuntimeException exception) {
+			throw new ParsingException(exception);
+		}
+	}
+
+	/**
+	 * @return the tree of the events.
+	 */
+	public CompactDocument toDocument(Parser<MarkupNode> source) throws ParsingException {
+		CompactDocument.Builder builder = CompactDocument.builder();
+		replay(source, builder);
+		return builder.build();
+	}
+
+	/**
+	 * @param table duplicate of the buffer, whose position and limit are moved.
+	 */
+	private String string(int index, ByteBuffer table) {
+		String string = strings[index];
+		if (string == null) {
+			table.limit(stringEnds[index]).position(stringStarts[index]);
+			byte[] bytes = new byte[table.remaining()];
+			table.get(bytes);
+			boolean ascii = true;
+			for (int i = 0; ascii && i < bytes.length; i++) {
+				ascii = bytes[i] >= 0;
+			}
+			// Decoding ASCII as Latin-1 skips the checks of UTF-8
+			string = strings[index] = new String(bytes, ascii? StandardCharsets.ISO_8859_1: StandardCharsets.UTF_8);
+		}
+		return string;
+	}
+
+	private static int readNumber(ByteBuffer buffer) {
+		int number = 0;
+		for (int shift = 0;; shift += 7) {
+			int b = buffer.get();
+			number |= (b & 0x7F) << shift;
+			if (b >= 0) { return number; }
+		}
+	}
+
+	/**
+	 * Handler recording the events of a parse, to be written as a snapshot once the parse is over.
+	 */
+	public static class Writer implements ReusedDataHandler {
+		private final Map<String, Integer> indexes = new HashMap<>();
+		private final List<String> strings = new ArrayList<>();
+		private byte[] events = new byte[4096];
+		private int length = 0;
+
+		@Override
+		public void handleEvent(ParsingData<MarkupNode> data) {
+			MarkupNode nodeType = data.getNodeType();
+			String value = data.getValue(), parent = data.getParent();
+			if (data.getEvent().ordinal() > END || (nodeType != null && nodeType.ordinal() >= NODE_TYPE_MASK)) { throw new IllegalStateException("Event " + data.getEvent() + " " + nodeType + " out of the snapshot format"); }
+			int header = data.getEvent().ordinal() | ((nodeType == null)? 0: (nodeType.ordinal() + 1) << NODE_TYPE_SHIFT);
+			if (value != null) {
+				header |= VALUE;
+			}
+			if (parent != null) {
+				header |= PARENT;
+			}
+			write(header);
+			if (value != null) {
+				writeNumber(index(value));
+			}
+			if (parent != null) {
+				writeNumber(index(parent));
+			}
+		}
+
+		/**
+		 * Writes the snapshot of the events recorded so far.
+		 */
+		public void write(OutputStream output) throws IOException {
+			ByteBuffer header = ByteBuffer.allocate(5).putInt(MAGIC).put((byte) VERSION);
+			output.write(header.array());
+			byte[] table = new byte[16];
+			int tableLength = 0;
+			tableLength = number(table, tableLength, strings.size());
+			for (String string : strings) {
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				if (table.length < tableLength + 5 + bytes.length) {
+					table = Arrays.copyOf(table, Math.max(table.length << 1, tableLength + 5 + bytes.length));
+				}
+				tableLength = number(table, tableLength, bytes.length);
+				System.arraycopy(bytes, 0, table, tableLength, bytes.length);
+				tableLength += bytes.length;
+			}
+			output.write(table, 0, tableLength);
+			output.write(events, 0, length);
+		}
+
+		public void write(Path path) throws IOException {
+			try (OutputStream output = Files.newOutputStream(path)) {
+				write(output);
+			}
+		}
+
+		private int index(String string) {
+			Integer index = indexes.get(string);
+			if (index == null) {
+				index = strings.size();
+				strings.add(string);
+				indexes.put(string, index);
+			}
+			return index;
+		}
+
+		private void write(int b) {
+			if (length == events.length) {
+				events = Arrays.copyOf(events, length << 1);
+			}
+			events[length++] = (byte) b;
+		}
+
+		private void writeNumber(int number) {
+			if (events.length < length + 5) {
+				events = Arrays.copyOf(events, events.length << 1);
+			}
+			length = number(events, length, number);
+		}
+
+		/** Writes the number at the offset of the array, which has room for it. @return the offset following it. */
+		private static int number(byte[] array, int offset, int number) {
+			while ((number & ~0x7F) != 0) {
+				array[offset++] = (byte) ((number & 0x7F) | 0x80);
+				number >>>= 7;
+			}
+			array[offset++] = (byte) number;
+			return offset;
+		}
+	}
+}
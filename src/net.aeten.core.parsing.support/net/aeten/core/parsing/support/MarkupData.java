@@ -0,0 +1,149 @@
+package net.aeten.core.parsing.support;
+
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingEvent;
+
+/**
+ * Mutable {@link ParsingData} reused by a parser for all the events of a parse. An instance is only valid for the duration of
+ * the {@link net.aeten.core.event.Handler#handleEvent(Object)} call which receives it; a handler keeping an event must
+ * {@link #snapshot()} it.
+ * 
+ * The value may be a window over the internal buffer of the parser: {@link #getText()} gives it without copy, the
+ * {@link String} is only built by {@link #getValue()}.
+ * 
+ * @see ReusedDataHandler
+ */
+public class MarkupData extends ParsingData<MarkupNode> {
+	private final Parser<MarkupNode> source;
+	private final Text text = new Text();
+	private ParsingEvent event;
+	private MarkupNode nodeType;
+	private String value;
+	private String parent;
+	private char[] chars;
+	private CharSequence sequence;
+	private int start, end;
+
+	public MarkupData(Parser<MarkupNode> source) {
+		super(source, null, null, null, null);
+		this.source = source;
+	}
+
+	MarkupData set(ParsingEvent event, MarkupNode nodeType, String value, String parent) {
+		this.event = event;
+		this.nodeType = nodeType;
+		this.value = value;
+		this.parent = parent;
+		chars = null;
+		sequence = null;
+		return this;
+	}
+
+	MarkupData set(ParsingEvent event, MarkupNode nodeType, char[] chars, int start, int end, String parent) {
+		set(event, nodeType, null, parent);
+		this.chars = chars;
+		this.start = start;
+		this.end = end;
+		return this;
+	}
+
+	MarkupData set(ParsingEvent event, MarkupNode nodeType, CharSequence sequence, int start, int end, String parent) {
+		set(event, nodeType, null, parent);
+		this.sequence = sequence;
+		this.start = start;
+		this.end = end;
+		return this;
+	}
+
+	/** Changes the event only, the value (and its possibly built {@link String}) is kept. */
+	MarkupData set(ParsingEvent event) {
+		this.event = event;
+		return this;
+	}
+
+	@Override
+	public ParsingEvent getEvent() {
+		return event;
+	}
+
+	@Override
+	public MarkupNode getNodeType() {
+		return nodeType;
+	}
+
+	@Override
+	public String getValue() {
+		if (value == null) {
+			if (chars != null) {
+				value = new String(chars, start, end - start);
+			} else if (sequence != null) {
+				value = sequence.subSequence(start, end).toString();
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * @return the value without copy. The returned sequence is only valid during the handler call, as the event itself.
+	 */
+	public CharSequence getText() {
+		return (value == null && (chars != null || sequence != null))? text: value;
+	}
+
+	@Override
+	public String getParent() {
+		return parent;
+	}
+
+	/**
+	 * @return an immutable copy of the current event, which remains valid after the handler call.
+	 */
+	public ParsingData<MarkupNode> snapshot() {
+		return new ParsingData<MarkupNode>(source, getEvent(), getNodeType(), getValue(), getParent());
+	}
+
+	/**
+	 * @return the given event if it is immutable, its {@link #snapshot()} otherwise.
+	 */
+	public static ParsingData<MarkupNode> snapshot(ParsingData<MarkupNode> data) {
+		return (data instanceof MarkupData)? ((MarkupData) data).snapshot(): data;
+	}
+
+	/**
+	 * @return the value of the given event, without copy if it is a {@link MarkupData}.
+	 */
+	public static CharSequence getText(ParsingData<MarkupNode> data) {
+		return (data instanceof MarkupData)? ((MarkupData) data).getText(): data.getValue();
+	}
+
+	@Override
+	public String toString() {
+		return event + " " + nodeType + ((getText() == null)? "": (" \"" + getText() + "\"")) + ((parent == null)? "": (" in " + parent));
+	}
+
+	private class Text implements CharSequence {
+		@Override
+		public int length() {
+			return end - start;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= end - start) { throw new IndexOutOfBoundsException(Integer.toString(index)); }
+			return (chars != null)? chars[start + index]: sequence.charAt(start + index);
+		}
+
+		@Override
+		public CharSequence subSequence(int from, int to) {
+			if (from < 0 || to > end - start || from > to) { throw new IndexOutOfBoundsException(from + ", " + to); }
+			return (chars != null)? new String(chars, start + from, to - from): sequence.subSequence(start + from, start + to);
+		}
+
+		@Override
+		public String toString() {
+			return getValue();
+		}
+	}
+}
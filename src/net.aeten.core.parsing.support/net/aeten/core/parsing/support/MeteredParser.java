@@ -0,0 +1,179 @@
+package net.aeten.core.parsing.support;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingEvent;
+import net.aeten.core.parsing.ParsingException;
+
+/**
+ * Parser measuring the parses of another one, whose {@link ParsingMetrics} are given to a listener once each parse ends,
+ * completed or not. It can be given to the document loaders in place of the parser it measures.
+ *
+ * The handler is wrapped into a recorder, which the {@link EventDispatcher} of the parser recognizes: the events are then
+ * counted as they are delivered, the handler keeping its {@link ReusedDataHandler reused} and
+ * {@link ControlledHandler controlled} modes. Reading the clock around each call would cost more than most handlers, so the
+ * handler time is estimated from one call in {@link #TIMED_EVENTS}. An unmeasured parse only costs the dispatcher a test by
+ * event.
+ */
+public class MeteredParser implements ConfiguredParser {
+	/** Period of the events whose handling is timed. */
+	public static final int TIMED_EVENTS = 64;
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	/** Least time between two readings of the clock, which a timed call includes. */
+	private static final long CLOCK_NANOSECONDS = clockNanoseconds();
+
+	private final Parser<MarkupNode> parser;
+	private final Handler<ParsingMetrics> listener;
+
+	public MeteredParser(Parser<MarkupNode> parser, Handler<ParsingMetrics> listener) {
+		this.parser = parser;
+		this.listener = listener;
+	}
+
+	@Override
+	public String getIdentifier() {
+		return parser.getIdentifier();
+	}
+
+	/**
+	 * @return the class and configuration of the measured parser, the parser itself if it does not tell its configuration.
+	 */
+	@Override
+	public Object getConfiguration() {
+		return (parser instanceof ConfiguredParser)? Arrays.asList(parser.getClass(), ((ConfiguredParser) parser).getConfiguration()): parser;
+	}
+
+	@Override
+	public void parse(Reader reader, Handler<ParsingData<MarkupNode>> handler) throws ParsingException {
+		final ParsingMetrics metrics = new ParsingMetrics(parser.getIdentifier(), System.currentTimeMillis());
+		long allocated = allocatedBytes();
+		Recorder recorder = new Recorder(handler, metrics);
+		long start = System.nanoTime();
+		try {
+			parser.parse(new FilterReader(reader) {
+				@Override
+				public int read() throws IOException {
+					int c = super.read();
+					if (c != -1) {
+						metrics.characters++;
+					}
+					return c;
+				}
+
+				@Override
+				public int read(char[] buffer, int offset, int length) throws IOException {
+					int count = super.read(buffer, offset, length);
+					if (count > 0) {
+						metrics.characters += count;
+					}
+					return count;
+				}
+			}, recorder);
+		} catch (ParsingException | RuntimeException | Error exception) {
+			metrics.failure = exception;
+			throw exception;
+		} finally {
+			metrics.nanoseconds = System.nanoTime() - start;
+			metrics.handlerNanoseconds = Math.min(recorder.handlerNanoseconds(), metrics.nanoseconds);
+			if (allocated >= 0) {
+				metrics.allocatedBytes = allocatedBytes() - allocated;
+			}
+			listener.handleEvent(metrics);
+		}
+	}
+
+	private static long clockNanoseconds() {
+		long least = Long.MAX_VALUE;
+		for (int i = 0; i < 1000; i++) {
+			long start = System.nanoTime();
+			least = Math.min(least, System.nanoTime() - start);
+		}
+		return least;
+	}
+
+	/**
+	 * @return the bytes allocated so far by the current thread, -1 if the virtual machine does not tell.
+	 */
+	private static long allocatedBytes() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+			if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) { return threads.getThreadAllocatedBytes(Thread.currentThread().getId()); }
+		}
+		return -1;
+	}
+
+	/**
+	 * Handler recording the events it is given. An {@link EventDispatcher} delivers to the recorded handler itself, recording
+	 * the events on the way; parsers which do not dispatch through one call the recorder, which records and delegates.
+	 */
+	static class Recorder extends ControlledHandler {
+		private static final long NOT_TIMED = Long.MIN_VALUE;
+
+		final Handler<ParsingData<MarkupNode>> handler;
+		private final ParsingMetrics metrics;
+		private long events = 0, timedEvents = 0, timedNanoseconds = 0;
+		private long start = NOT_TIMED;
+
+		Recorder(Handler<ParsingData<MarkupNode>> handler, ParsingMetrics metrics) {
+			this.handler = handler;
+			this.metrics = metrics;
+		}
+
+		@Override
+		public Signal handle(ParsingData<MarkupNode> data) {
+			started(data);
+			try {
+				if (handler instanceof ControlledHandler) { return ((ControlledHandler) handler).handle(data); }
+				handler.handleEvent(data);
+				return Signal.CONTINUE;
+			} finally {
+				handled();
+			}
+		}
+
+		/**
+		 * Counts the event, before it is handled.
+		 */
+		void started(ParsingData<MarkupNode> data) {
+			MarkupNode nodeType = data.getNodeType();
+			metrics.events[(nodeType == null)? metrics.events.length - 1: nodeType.ordinal()]++;
+			if (data.getEvent() == ParsingEvent.START_NODE) {
+				if (++metrics.depth > metrics.maxDepth) {
+					metrics.maxDepth = metrics.depth;
+				}
+			} else {
+				metrics.depth--;
+			}
+			if (events++ % TIMED_EVENTS == 0) {
+				start = System.nanoTime();
+			}
+		}
+
+		/**
+		 * Times the handling of the event, if sampled.
+		 */
+		void handled() {
+			if (start != NOT_TIMED) {
+				timedNanoseconds += Math.max(System.nanoTime() - start - CLOCK_NANOSECONDS, 0);
+				timedEvents++;
+				start = NOT_TIMED;
+			}
+		}
+
+		/**
+		 * @return the time spent in the handler, estimated from the timed events.
+		 */
+		long handlerNanoseconds() {
+			return (timedEvents == 0)? 0: timedNanoseconds * events / timedEvents;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package net.aeten.core.parsing.support;
+
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingException;
+
+/**
+ * Pull access to the events of one parse. The input is only read as far as the pulled events need, so a consumer may stop
+ * once it has what it looks for and close the cursor.
+ */
+public interface ParsingCursor extends AutoCloseable {
+	/**
+	 * @return the next event, null at the end of input or once closed.
+	 */
+	ParsingData<MarkupNode> next() throws ParsingException;
+
+	/**
+	 * Skips the children of the node whose start was the last event returned, so that the next event is its end. Their
+	 * events are not built, and parsers skip as much of their input as they can. Does nothing if the last event was not a
+	 * start.
+	 */
+	void skipChildren() throws ParsingException;
+
+	/**
+	 * @return the number of nodes started and not yet ended by the events returned so far.
+	 */
+	int currentDepth();
+
+	/**
+	 * Stops the parse. The underlying input is not closed.
+	 */
+	@Override
+	void close() throws ParsingException;
+}
@@ -0,0 +1,34 @@
+package net.aeten.core.parsing.support;
+
+import java.nio.ByteBuffer;
+
+import net.aeten.core.parsing.ParsingException;
+
+/**
+ * Push access to one parse: the UTF-8 encoded input is fed by parts, cut anywhere, and the events of each entry are fired as
+ * soon as the entry is complete. The feeder keeps the bytes of the incomplete entry between two parts, so that a single
+ * thread can drive many parses at once.
+ */
+public interface ParsingFeeder extends AutoCloseable {
+	/**
+	 * Parses the bytes from the buffer position to its limit, where the buffer is left. The buffer may be reused once the call
+	 * returns. Once the parse is done, the bytes are ignored.
+	 */
+	void feed(ByteBuffer bytes) throws ParsingException;
+
+	/**
+	 * Parses what remains of the input and ends the document.
+	 */
+	void endOfInput() throws ParsingException;
+
+	/**
+	 * @return true once the input has ended, the handler has stopped the parse or the feeder is closed.
+	 */
+	boolean isDone();
+
+	/**
+	 * Stops the parse, releasing what the feeder holds.
+	 */
+	@Override
+	void close() throws ParsingException;
+}
@@ -0,0 +1,41 @@
+package net.aeten.core.parsing.support;
+
+/**
+ * Interfaces of reactive streams, with the names, signatures and rules of those of {@code java.util.concurrent.Flow}, which
+ * the platform of this project predates. Bridging them to Flow or to the Reactive Streams interfaces is a plain delegation.
+ */
+public final class ParsingFlow {
+	private ParsingFlow() {}
+
+	/**
+	 * Producer of items, delivered to a subscriber as it requests them.
+	 */
+	public interface Publisher<T> {
+		void subscribe(Subscriber<? super T> subscriber);
+	}
+
+	/**
+	 * Receiver of the signals of a subscription, which are never concurrent.
+	 */
+	public interface Subscriber<T> {
+		void onSubscribe(Subscription subscription);
+
+		void onNext(T item);
+
+		void onError(Throwable failure);
+
+		void onComplete();
+	}
+
+	/**
+	 * Link between a publisher and its subscriber, through which the subscriber tells how many more items it can take.
+	 */
+	public interface Subscription {
+		/**
+		 * Adds to the demand, an error being signaled if it is not positive.
+		 */
+		void request(long n);
+
+		void cancel();
+	}
+}
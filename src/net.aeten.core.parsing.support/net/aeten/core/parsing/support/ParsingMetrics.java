@@ -0,0 +1,121 @@
+package net.aeten.core.parsing.support;
+
+import net.aeten.core.parsing.MarkupNode;
+
+/**
+ * Figures of one parse, measured by a {@link MeteredParser}. The time of the parse is split between the handler, inside its
+ * calls, and the parser, the rest. Allocations are those of the parsing thread, as reported by the virtual machine.
+ */
+public class ParsingMetrics {
+	private static final MarkupNode[] NODE_TYPES = MarkupNode.values();
+
+	final String parser;
+	final long startMillis;
+	long characters = 0;
+	final long[] events = new long[NODE_TYPES.length + 1];
+	int depth = 0, maxDepth = 0;
+	long nanoseconds = 0, handlerNanoseconds = 0;
+	long allocatedBytes = -1;
+	Throwable failure = null;
+
+	ParsingMetrics(String parser, long startMillis) {
+		this.parser = parser;
+		this.startMillis = startMillis;
+	}
+
+	/**
+	 * @return the identifier of the parser.
+	 */
+	public String getParser() {
+		return parser;
+	}
+
+	/**
+	 * @return the wall-clock time of the start of the parse, in milliseconds since the epoch.
+	 */
+	public long getStartMillis() {
+		return startMillis;
+	}
+
+	/**
+	 * @return the characters read from the input.
+	 */
+	public long getCharacters() {
+		return characters;
+	}
+
+	/**
+	 * @return the events delivered, starts and ends.
+	 */
+	public long getEvents() {
+		long total = 0;
+		for (long count : events) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * @return the events delivered for the node type, starts and ends.
+	 */
+	public long getEvents(MarkupNode nodeType) {
+		return events[(nodeType == null)? NODE_TYPES.length: nodeType.ordinal()];
+	}
+
+	/**
+	 * @return the greatest number of nodes open at once.
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public long getNanoseconds() {
+		return nanoseconds;
+	}
+
+	/**
+	 * @return the time spent in the handler, estimated from a sample of its calls.
+	 */
+	public long getHandlerNanoseconds() {
+		return handlerNanoseconds;
+	}
+
+	/**
+	 * @return the time spent reading, parsing and delivering the events, out of the handler.
+	 */
+	public long getParserNanoseconds() {
+		return nanoseconds - handlerNanoseconds;
+	}
+
+	/**
+	 * @return the bytes allocated by the parsing thread during the parse, handler included, -1 if the virtual machine does not
+	 *         tell.
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * @return the exception which ended the parse, null if it completed.
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder(parser).append(": ").append(characters).append(" characters, ").append(getEvents()).append(" events (");
+		String separator = "";
+		for (MarkupNode nodeType : NODE_TYPES) {
+			if (events[nodeType.ordinal()] > 0) {
+				text.append(separator).append(nodeType).append(' ').append(events[nodeType.ordinal()]);
+				separator = ", ";
+			}
+		}
+		text.append("), depth ").append(maxDepth).append(", ").append(nanoseconds / 1000).append(" us of which ").append(handlerNanoseconds / 1000).append(" us in the handler");
+		if (allocatedBytes >= 0) {
+			text.append(", ").append(allocatedBytes).append(" bytes allocated");
+		}
+		return (failure == null)? text.toString(): text.append(", failed: ").append(failure).toString();
+	}
+}
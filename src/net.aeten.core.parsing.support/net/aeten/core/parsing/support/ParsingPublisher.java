@@ -0,0 +1,371 @@
+package net.aeten.core.parsing.support;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channel;
+import java.nio.channels.Channels;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingException;
+
+/**
+ * Publisher of the events of a parse, which only advances as far as its subscriber requests. The UTF-8 encoded input is read
+ * from a channel by parts, a part being read once the events of the previous ones are all delivered and more are requested:
+ * a slow subscriber thus holds back the reads, and at most the events of a part wait for it.
+ *
+ * A {@link PushParser} is fed the parts of an {@link AsynchronousFileChannel}, with no thread waiting for the reads, or of a
+ * {@link ReadableByteChannel} read by tasks of an executor. A {@link PullParser} is pulled through a {@link ParsingCursor} by
+ * tasks of the executor, each pulling at most the events requested. The input being consumed by the parse, a publisher
+ * accepts a single subscriber. The channel is closed once the parse completes, fails or is cancelled.
+ */
+public class ParsingPublisher implements ParsingFlow.Publisher<ParsingData<MarkupNode>> {
+	/** Bytes read at once from the channel. */
+	public static final int PART_SIZE = 16 * 1024;
+	/** Most events pulled at once from a cursor. */
+	public static final int PULLED_EVENTS = 256;
+
+	private static final ParsingFlow.Subscription REFUSED = new ParsingFlow.Subscription() {
+		@Override
+		public void request(long n) {}
+
+		@Override
+		public void cancel() {}
+	};
+
+	private final Parser<MarkupNode> parser;
+	private final Channel channel;
+	private final Executor executor;
+	private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+	/**
+	 * Publisher feeding the parser with the file, read asynchronously from its start.
+	 */
+	public ParsingPublisher(PushParser parser, AsynchronousFileChannel channel) {
+		this(parser, channel, null);
+	}
+
+	/**
+	 * @param parser a {@link PushParser} or a {@link PullParser}.
+	 * @param channel a blocking channel.
+	 * @param executor runs the reads of the channel.
+	 */
+	public ParsingPublisher(Parser<MarkupNode> parser, ReadableByteChannel channel, Executor executor) {
+		this(parser, (Channel) channel, executor);
+		if (!(parser instanceof PushParser) && !(parser instanceof PullParser)) { throw new IllegalArgumentException(parser.getIdentifier() + " can be neither fed nor pulled"); }
+	}
+
+	private ParsingPublisher(Parser<MarkupNode> parser, Channel channel, Executor executor) {
+		this.parser = parser;
+		this.channel = channel;
+		this.executor = executor;
+	}
+
+	@Override
+	public void subscribe(ParsingFlow.Subscriber<? super ParsingData<MarkupNode>> subscriber) {
+		if (subscriber == null) { throw new NullPointerException("Null subscriber"); }
+		if (!subscribed.compareAndSet(false, true)) {
+			subscriber.onSubscribe(REFUSED);
+			subscriber.onError(new IllegalStateException("Already subscribed, the input is consumed by the parse"));
+			return;
+		}
+		subscriber.onSubscribe((parser instanceof PushParser)? new Feeding(subscriber): new Pulling(subscriber));
+	}
+
+	/**
+	 * Events produced at once, up to the end of input or a failure.
+	 */
+	private static class Part {
+		final List<ParsingData<MarkupNode>> events;
+		final boolean end;
+		final Throwable failure;
+
+		Part(List<ParsingData<MarkupNode>> events, boolean end, Throwable failure) {
+			this.events = events;
+			this.end = end;
+			this.failure = failure;
+		}
+	}
+
+	/**
+	 * Subscription delivering the events as they are requested, the next part being produced once the events are exhausted.
+	 * Requests, cancellation and productions may come from any thread: each of them drains the signals, a single thread
+	 * at once, the others leaving their work to it. A request made by the subscriber from one of its signals is thus handled
+	 * by the loop which signals it, and not by a nested call.
+	 */
+	private abstract class Emission implements ParsingFlow.Subscription {
+		private final ParsingFlow.Subscriber<? super ParsingData<MarkupNode>> subscriber;
+		private final AtomicLong requested = new AtomicLong(0);
+		private final AtomicInteger work = new AtomicInteger(0);
+		private volatile boolean cancelled = false;
+		private volatile Throwable refused = null;
+		private volatile Part produced = null;
+		// Owned by the draining thread
+		private final Queue<ParsingData<MarkupNode>> events = new ArrayDeque<>();
+		private boolean producing = false, ended = false, terminated = false;
+		private Throwable failure = null;
+
+		Emission(ParsingFlow.Subscriber<? super ParsingData<MarkupNode>> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				refused = new IllegalArgumentException("Request of " + n + " events");
+			} else {
+				long current, demand;
+				do {
+					current = requested.get();
+					demand = current + n;
+				} while (!requested.compareAndSet(current, (demand < 0)? Long.MAX_VALUE: demand));
+			}
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			drain();
+		}
+
+		/**
+		 * Starts the production of the next events, which ends by a call to {@link #produced(List, boolean, Throwable)} from
+		 * any thread.
+		 */
+		abstract void produce();
+
+		/**
+		 * Closes the parse and the channel. Never called during a production.
+		 */
+		abstract void release() throws ParsingException, IOException;
+
+		long requested() {
+			return requested.get();
+		}
+
+		void produced(List<ParsingData<MarkupNode>> events, boolean end, Throwable failure) {
+			produced = new Part(events, end, failure);
+			drain();
+		}
+
+		private void drain() {
+			if (work.getAndIncrement() != 0) { return; }
+			int missed = 1;
+			do {
+				emit();
+				missed = work.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		private void emit() {
+			while (!terminated) {
+				Part part = produced;
+				if (part != null) {
+					produced = null;
+					producing = false;
+					events.addAll(part.events);
+					ended = part.end;
+					failure = part.failure;
+				}
+				if (cancelled || refused != null || failure != null) {
+					if (producing) { return; }
+					terminate();
+					Throwable error = (refused != null)? refused: failure;
+					try {
+						release();
+					} catch (ParsingException | IOException | RuntimeException exception) {
+						if (error != null) {
+							error.addSuppressed(exception);
+						}
+					}
+					if (!cancelled) {
+						subscriber.onError(error);
+					}
+					return;
+				}
+				if (!events.isEmpty()) {
+					if (requested.get() == 0) { return; }
+					if (requested.get() != Long.MAX_VALUE) {
+						requested.decrementAndGet();
+					}
+					subscriber.onNext(events.poll());
+				} else if (ended) {
+					terminate();
+					try {
+						release();
+					} catch (ParsingException | IOException | RuntimeException exception) {
+						subscriber.onError(exception);
+						return;
+					}
+					subscriber.onComplete();
+				} else if (producing || requested.get() == 0) {
+					return;
+				} else {
+					producing = true;
+					try {
+						produce();
+					} catch (RuntimeException exception) {
+						producing = false;
+						failure = exception;
+					}
+				}
+			}
+		}
+
+		private void terminate() {
+			terminated = true;
+			events.clear();
+		}
+	}
+
+	/**
+	 * Emission feeding a {@link PushParser} a part of the channel at each production.
+	 */
+	private class Feeding extends Emission {
+		private final ByteBuffer buffer = ByteBuffer.allocate(PART_SIZE);
+		private final Handler<ParsingData<MarkupNode>> handler = new Handler<ParsingData<MarkupNode>>() {
+			@Override
+			public void handleEvent(ParsingData<MarkupNode> data) {
+				part.add(data);
+			}
+		};
+		private ParsingFeeder feeder = null;
+		private List<ParsingData<MarkupNode>> part;
+		private long position = 0;
+
+		Feeding(ParsingFlow.Subscriber<? super ParsingData<MarkupNode>> subscriber) {
+			super(subscriber);
+		}
+
+		@Override
+		void produce() {
+			part = new ArrayList<>();
+			if (feeder == null) {
+				try {
+					feeder = ((PushParser) parser).feeder(handler);
+				} catch (ParsingException exception) {
+					produced(part, true, exception);
+					return;
+				}
+			}
+			if (channel instanceof AsynchronousFileChannel) {
+				((AsynchronousFileChannel) channel).read(buffer, position, null, new CompletionHandler<Integer, Void>() {
+					@Override
+					public void completed(Integer count, Void attachment) {
+						feed(count);
+					}
+
+					@Override
+					public void failed(Throwable failure, Void attachment) {
+						produced(part, true, failure);
+					}
+				});
+			} else {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						int count;
+						try {
+							count = ((ReadableByteChannel) channel).read(buffer);
+						} catch (IOException exception) {
+							produced(part, true, exception);
+							return;
+						}
+						feed(count);
+					}
+				});
+			}
+		}
+
+		private void feed(int count) {
+			try {
+				if (count == -1) {
+					feeder.endOfInput();
+				} else {
+					position += count;
+					buffer.flip();
+					feeder.feed(buffer);
+					buffer.clear();
+				}
+				produced(part, feeder.isDone(), null);
+			} catch (ParsingException | RuntimeException exception) {
+				produced(part, true, exception);
+			}
+		}
+
+		@Override
+		void release() throws ParsingException, IOException {
+			try {
+				if (feeder != null) {
+					feeder.close();
+				}
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Emission pulling from the cursor of a {@link PullParser} at most the requested events at each production.
+	 */
+	private class Pulling extends Emission {
+		private ParsingCursor cursor = null;
+
+		Pulling(ParsingFlow.Subscriber<? super ParsingData<MarkupNode>> subscriber) {
+			super(subscriber);
+		}
+
+		@Override
+		void produce() {
+			final long count = Math.min(requested(), PULLED_EVENTS);
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					List<ParsingData<MarkupNode>> part = new ArrayList<>();
+					try {
+						if (cursor == null) {
+							cursor = ((PullParser) parser).open(Channels.newReader((ReadableByteChannel) channel, StandardCharsets.UTF_8.name()));
+						}
+						while (part.size() < count) {
+							ParsingData<MarkupNode> data = cursor.next();
+							if (data == null) {
+								produced(part, true, null);
+								return;
+							}
+							part.add(data);
+						}
+						produced(part, false, null);
+					} catch (ParsingException | RuntimeException exception) {
+						produced(part, true, exception);
+					}
+				}
+			});
+		}
+
+		@Override
+		void release() throws ParsingException, IOException {
+			try {
+				if (cursor != null) {
+					cursor.close();
+				}
+			} finally {
+				channel.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,336 @@
+package net.aeten.core.parsing.support;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingEvent;
+
+/**
+ * Set of paths compiled into an automaton, which projects the events of a parse on the subtrees they designate.
+ *
+ * A path is a sequence of steps separated by '/', from the root of the document. A step is the name of a tag, or '*' for
+ * any tag or any item of a list which is not a tag, as the items of a YAML sequence: the steps "list", "*" and "name" thus
+ * designate the name tag of every item of the YAML sequence list. The XML root element is the first step of an XML path. The
+ * empty path designates the whole document.
+ *
+ * The {@link #handler(Handler) handler} of a projection hands on the events of the matched subtrees, within the starts and
+ * ends of their ancestors. A YAML tag keeps the leaves which name it, its key and types. The handler steers the parse as a
+ * {@link ControlledHandler}, skipping every subtree in which no path can match: the parsers only follow its structure, and
+ * in the {@link ReusedDataHandler reused} mode the values of its leaves are never built.
+ */
+public final class Projection {
+	private static final String ANY = "*";
+
+	private final State start;
+
+	private Projection(State start) {
+		this.start = start;
+	}
+
+	public static Projection compile(String... paths) {
+		return compile(Arrays.asList(paths));
+	}
+
+	/**
+	 * Builds the deterministic automaton of the paths, whose states are the sets of steps reached. Its alphabet is the names
+	 * of the paths and the other names, which only '*' matches: it is thus finite and built at once.
+	 */
+	public static Projection compile(Collection<String> paths) {
+		Step root = new Step();
+		for (String path : paths) {
+			Step step = root;
+			if (!path.isEmpty()) {
+				for (String name : path.split("/", -1)) {
+					if (name.isEmpty()) { throw new IllegalArgumentException("Empty step in path \"" + path + "\""); }
+					step = step.child(name);
+				}
+			}
+			step.end = true;
+		}
+		Map<Set<Step>, State> states = new HashMap<>();
+		Queue<Set<Step>> pending = new ArrayDeque<>();
+		State start = state(Collections.singleton(root), states, pending);
+		for (Set<Step> steps; (steps = pending.poll()) != null;) {
+			State state = states.get(steps);
+			if (state.matches) {
+				continue;
+			}
+			Set<Step> other = new HashSet<>();
+			Set<String> names = new HashSet<>();
+			for (Step step : steps) {
+				if (step.any != null) {
+					other.add(step.any);
+				}
+				names.addAll(step.children.keySet());
+			}
+			state.other = state(other, states, pending);
+			for (String name : names) {
+				Set<Step> target = new HashSet<>(other);
+				for (Step step : steps) {
+					Step child = step.children.get(name);
+					if (child != null) {
+						target.add(child);
+					}
+				}
+				state.named.put(name, state(target, states, pending));
+			}
+		}
+		return new Projection(start);
+	}
+
+	private static State state(Set<Step> steps, Map<Set<Step>, State> states, Queue<Set<Step>> pending) {
+		State state = states.get(steps);
+		if (state == null) {
+			boolean matches = false;
+			for (Step step : steps) {
+				matches |= step.end;
+			}
+			state = new State(matches, steps.isEmpty());
+			states.put(steps, state);
+			pending.add(steps);
+		}
+		return state;
+	}
+
+	/**
+	 * @return a handler projecting the events of one parse to the given handler, which may be controlled or take reused data.
+	 */
+	public ControlledHandler handler(Handler<ParsingData<MarkupNode>> handler) {
+		return new Projector(start, handler);
+	}
+
+	/**
+	 * Node of the tree of the paths.
+	 */
+	private static class Step {
+		final Map<String, Step> children = new HashMap<>();
+		Step any = null;
+		boolean end = false;
+
+		Step child(String name) {
+			if (ANY.equals(name)) {
+				if (any == null) {
+					any = new Step();
+				}
+				return any;
+			}
+			Step child = children.get(name);
+			if (child == null) {
+				child = new Step();
+				children.put(name, child);
+			}
+			return child;
+		}
+	}
+
+	/**
+	 * State of the automaton, immutable once compiled.
+	 */
+	private static class State {
+		/** A path ends here: the whole subtree is projected. */
+		final boolean matches;
+		/** No path goes on from here: the subtree is skipped. */
+		final boolean dead;
+		final Map<String, State> named = new HashMap<>();
+		State other = null;
+
+		State(boolean matches, boolean dead) {
+			this.matches = matches;
+			this.dead = dead;
+		}
+
+		State step(String name) {
+			if (name == null) { return other; }
+			State state = named.get(name);
+			return (state == null)? other: state;
+		}
+	}
+
+	/**
+	 * Handler following the state of the automaton in each open node. The start of a node on the way to a match is kept, with
+	 * the leaves leading a tag, until a match below it is handed on or it ends. A YAML tag starts without name, which is the
+	 * parent of its first child: its state is only known then, and its following children are skipped if it is dead.
+	 */
+	private static class Projector extends ControlledHandler implements ReusedDataHandler {
+		private static final int NONE = -1;
+
+		private final State start;
+		private final Handler<ParsingData<MarkupNode>> handler;
+		private final ControlledHandler controlled;
+		private final boolean reused;
+		// Open nodes: type, state within, whether handed on, and kept events while not
+		private MarkupNode[] nodeTypes = new MarkupNode[16];
+		private State[] states = new State[16];
+		private boolean[] emitted = new boolean[16], leading = new boolean[16], kept = new boolean[16];
+		private final List<List<ParsingData<MarkupNode>>> context = new ArrayList<>();
+		private int depth = 0, matched = NONE;
+		private boolean stopped = false;
+
+		Projector(State start, Handler<ParsingData<MarkupNode>> handler) {
+			this.start = start;
+			this.handler = handler;
+			this.controlled = (handler instanceof ControlledHandler)? (ControlledHandler) handler: null;
+			this.reused = handler instanceof ReusedDataHandler;
+		}
+
+		@Override
+		public Signal handle(ParsingData<MarkupNode> data) {
+			return (data.getEvent() == ParsingEvent.START_NODE)? start(data): end(data);
+		}
+
+		private Signal start(ParsingData<MarkupNode> data) {
+			MarkupNode nodeType = data.getNodeType();
+			int parent = depth - 1;
+			if (matched != NONE) {
+				push(nodeType, null, true);
+				return hand(data);
+			}
+			State state = (parent == NONE)? start: states[parent];
+			if (state == null) {
+				// First child of a tag named by it
+				state = states[parent] = ((parent == 0)? start: states[parent - 1]).step(data.getParent());
+				if (state.matches) {
+					emitAncestors(depth);
+					matched = parent;
+					push(nodeType, null, true);
+					return hand(data);
+				}
+			}
+			if (state.dead) {
+				push(nodeType, state, false);
+				return Signal.SKIP_SUBTREE;
+			}
+			boolean step = nodeType == MarkupNode.TAG || (parent != NONE && nodeTypes[parent] == MarkupNode.LIST && nodeType != MarkupNode.TYPE);
+			if (step) {
+				if (nodeType == MarkupNode.TAG && data.getValue() == null) {
+					push(nodeType, null, false);
+					keep(depth - 1, data);
+					return Signal.CONTINUE;
+				}
+				state = state.step((nodeType == MarkupNode.TAG)? data.getValue(): null);
+				if (state.dead) {
+					push(nodeType, state, false);
+					return Signal.SKIP_SUBTREE;
+				}
+			}
+			if (state.matches) {
+				emitAncestors(depth);
+				matched = depth;
+				push(nodeType, state, true);
+				return hand(data);
+			}
+			if (isLeaf(nodeType)) {
+				boolean leads = parent != NONE && leading[parent];
+				push(nodeType, state, false);
+				if (leads) {
+					kept[depth - 1] = true;
+					keep(parent, data);
+				}
+				return Signal.CONTINUE;
+			}
+			if (parent != NONE) {
+				leading[parent] = false;
+			}
+			push(nodeType, state, false);
+			keep(depth - 1, data);
+			return Signal.CONTINUE;
+		}
+
+		private Signal end(ParsingData<MarkupNode> data) {
+			int node = --depth;
+			if (node == matched) {
+				matched = NONE;
+			}
+			context.set(node, null);
+			if (emitted[node]) { return hand(data); }
+			if (kept[node]) {
+				keep(node - 1, data);
+			}
+			return Signal.CONTINUE;
+		}
+
+		private void push(MarkupNode nodeType, State state, boolean emitted) {
+			if (depth == states.length) {
+				nodeTypes = Arrays.copyOf(nodeTypes, depth << 1);
+				states = Arrays.copyOf(states, depth << 1);
+				this.emitted = Arrays.copyOf(this.emitted, depth << 1);
+				leading = Arrays.copyOf(leading, depth << 1);
+				kept = Arrays.copyOf(kept, depth << 1);
+			}
+			if (depth == context.size()) {
+				context.add(null);
+			}
+			nodeTypes[depth] = nodeType;
+			states[depth] = state;
+			this.emitted[depth] = emitted;
+			leading[depth] = nodeType == MarkupNode.TAG;
+			kept[depth] = false;
+			depth++;
+		}
+
+		private void keep(int node, ParsingData<MarkupNode> data) {
+			List<ParsingData<MarkupNode>> events = context.get(node);
+			if (events == null) {
+				events = new ArrayList<>(4);
+				context.set(node, events);
+			}
+			events.add(MarkupData.snapshot(data));
+		}
+
+		/**
+		 * Hands on the kept events of the open nodes below the given depth which were not yet. A signal other than a stop is
+		 * ignored for them, their following events being already parsed.
+		 */
+		private void emitAncestors(int below) {
+			int node = below;
+			while (node > 0 && !emitted[node - 1]) {
+				node--;
+			}
+			for (; node < below; node++) {
+				emitted[node] = true;
+				List<ParsingData<MarkupNode>> events = context.set(node, null);
+				if (events == null) {
+					continue;
+				}
+				for (ParsingData<MarkupNode> event : events) {
+					if (hand(event) == Signal.STOP) {
+						stopped = true;
+					}
+				}
+			}
+		}
+
+		private Signal hand(ParsingData<MarkupNode> data) {
+			if (stopped) { return Signal.STOP; }
+			ParsingData<MarkupNode> event = reused? data: MarkupData.snapshot(data);
+			if (controlled != null) { return controlled.handle(event); }
+			handler.handleEvent(event);
+			return Signal.CONTINUE;
+		}
+
+		private static boolean isLeaf(MarkupNode nodeType) {
+			switch (nodeType) {
+			case TYPE:
+			case TEXT:
+			case ANCHOR:
+			case REFERENCE:
+			case COMMENT:
+				return true;
+			default:
+				return false;
+			}
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package net.aeten.core.parsing.support;
+
+import java.io.Reader;
+
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingException;
+
+/**
+ * Parser which can also be pulled, through a cursor reading its input on demand.
+ */
+public interface PullParser extends Parser<MarkupNode> {
+	/**
+	 * @return a cursor over the events of the input, which must be closed. Closing it does not close the reader.
+	 */
+	ParsingCursor open(Reader reader) throws ParsingException;
+}
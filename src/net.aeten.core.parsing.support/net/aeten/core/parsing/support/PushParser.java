@@ -0,0 +1,17 @@
+package net.aeten.core.parsing.support;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingException;
+
+/**
+ * Parser which can also be fed its input by parts as they arrive, without a thread blocking on a reader.
+ */
+public interface PushParser extends Parser<MarkupNode> {
+	/**
+	 * @return a feeder of the input of a parse, whose events are given to the handler.
+	 */
+	ParsingFeeder feeder(Handler<ParsingData<MarkupNode>> handler) throws ParsingException;
+}
@@ -0,0 +1,12 @@
+package net.aeten.core.parsing.support;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.ParsingData;
+
+/**
+ * Handler opting in the reused event mode: the parser hands it the same {@link MarkupData} instance for each event of a parse,
+ * reset before each call. The data must not be kept after {@link #handleEvent(Object)} returns unless
+ * {@link MarkupData#snapshot() snapshotted}.
+ */
+public interface ReusedDataHandler extends Handler<ParsingData<MarkupNode>> {}
@@ -0,0 +1,98 @@
+package net.aeten.core.parsing.support;
+
+/**
+ * Canonical {@link String} instances for ranges of characters, such as the keys and type names a document repeats. The table
+ * is an open-addressing hash of the ranges, looked up without building a string. It is bounded: once full, the symbols it does
+ * not hold yet are built but no longer kept. An instance is meant for a single parse, and is not thread-safe.
+ */
+public class SymbolTable {
+	public static final int DEFAULT_MAX_SIZE = 1 << 14;
+	/** Longer ranges are seldom repeated, and are never kept. */
+	public static final int MAX_LENGTH = 128;
+
+	private final int maxSize;
+	private String[] symbols = new String[64];
+	private int[] hashes = new int[64];
+	private int size = 0;
+
+	public SymbolTable() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public SymbolTable(int maxSize) {
+		if (maxSize < 1) { throw new IllegalArgumentException("Maximum size must be positive: " + maxSize); }
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return the canonical string of the characters [start, end[ of the sequence.
+	 */
+	public String intern(CharSequence sequence, int start, int end) {
+		if (end - start > MAX_LENGTH) { return sequence.subSequence(start, end).toString(); }
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + sequence.charAt(i);
+		}
+		int mask = symbols.length - 1;
+		int slot = mix(hash) & mask;
+		for (String symbol; (symbol = symbols[slot]) != null; slot = (slot + 1) & mask) {
+			if (hashes[slot] == hash && equals(symbol, sequence, start, end)) { return symbol; }
+		}
+		String symbol = sequence.subSequence(start, end).toString();
+		if (size < maxSize) {
+			symbols[slot] = symbol;
+			hashes[slot] = hash;
+			if (++size << 1 > symbols.length) {
+				grow();
+			}
+		}
+		return symbol;
+	}
+
+	/**
+	 * @return the canonical instance of the string.
+	 */
+	public String intern(String string) {
+		return (string == null)? null: intern(string, 0, string.length());
+	}
+
+	/**
+	 * @return the number of symbols held.
+	 */
+	public int size() {
+		return size;
+	}
+
+	private void grow() {
+		String[] oldSymbols = symbols;
+		int[] oldHashes = hashes;
+		symbols = new String[oldSymbols.length << 1];
+		hashes = new int[symbols.length];
+		int mask = symbols.length - 1;
+		for (int i = 0; i < oldSymbols.length; i++) {
+			if (oldSymbols[i] != null) {
+				int slot = mix(oldHashes[i]) & mask;
+				while (symbols[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				symbols[slot] = oldSymbols[i];
+				hashes[slot] = oldHashes[i];
+			}
+		}
+	}
+
+	/** Spreads all the bits of the hash over the low ones, which index the table. */
+	private static int mix(int hash) {
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		return hash ^ (hash >>> 13);
+	}
+
+	private static boolean equals(String symbol, CharSequence sequence, int start, int end) {
+		if (symbol.length() != end - start) { return false; }
+		for (int i = start; i < end; i++) {
+			if (symbol.charAt(i - start) != sequence.charAt(i)) { return false; }
+		}
+		return true;
+	}
+}
@@ -0,0 +1,118 @@
+package net.aeten.core.parsing.xml;
+
+import java.io.Reader;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingEvent;
+import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.support.ConfiguredParser;
+import net.aeten.core.parsing.support.ControlledHandler;
+import net.aeten.core.parsing.support.PullParser;
+import net.aeten.core.parsing.xml.XmlParser.Feature;
+
+/**
+ * Pull-mode variant of {@link XmlParser}, built on {@link javax.xml.stream.XMLStreamReader}, whose events can be pulled from
+ * an {@link XmlCursor} at the consumer pace. They are the events {@link XmlParser} fires, except that adjacent texts are
+ * coalesced where SAX may split them, around entity references for instance.
+ *
+ * The elements skipped by a {@link ControlledHandler} or an {@link XmlCursor} are not read into events.
+ */
+public class StaxXmlParser implements PullParser, ConfiguredParser {
+	private static final String IGNORE_EXTERNAL_DTD = "http://java.sun.com/xml/stream/properties/ignore-external-dtd";
+
+	private final XMLInputFactory factory;
+	private final Set<Feature> features = EnumSet.noneOf(Feature.class);
+
+	public StaxXmlParser() {
+		this(EnumSet.noneOf(Feature.class));
+	}
+
+	/**
+	 * @throws IllegalArgumentException if a feature is not supported by the StAX implementation.
+	 */
+	public StaxXmlParser(Set<Feature> features) {
+		this.features.addAll(features);
+		factory = XMLInputFactory.newInstance();
+		try {
+			factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+			factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, features.contains(Feature.NAMESPACE_AWARE));
+			if (features.contains(Feature.DISABLE_EXTERNAL_DTD)) {
+				if (factory.isPropertySupported(IGNORE_EXTERNAL_DTD)) {
+					factory.setProperty(IGNORE_EXTERNAL_DTD, true);
+				} else {
+					factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+				}
+			}
+			if (features.contains(Feature.DISABLE_EXTERNAL_ENTITIES)) {
+				factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+			}
+		} catch (IllegalArgumentException exception) {
+			throw new IllegalArgumentException("Unsupported features " + features, exception);
+		}
+	}
+
+	@Override
+	public void parse(Reader reader, Handler<ParsingData<MarkupNode>> handler) throws ParsingException {
+		try (XmlCursor cursor = open(reader)) {
+			ControlledHandler controlled = (handler instanceof ControlledHandler)? (ControlledHandler) handler: null;
+			for (ParsingData<MarkupNode> data; (data = cursor.next()) != null;) {
+				if (controlled == null) {
+					handler.handleEvent(data);
+					continue;
+				}
+				switch (controlled.handle(data)) {
+				case SKIP_SUBTREE:
+					if (data.getEvent() == ParsingEvent.START_NODE) {
+						cursor.skipChildren();
+					}
+					break;
+				case STOP:
+					return;
+				default:
+					break;
+				}
+			}
+		}
+	}
+
+	@Override
+	public XmlCursor open(Reader reader) throws ParsingException {
+		return open(reader, this);
+	}
+
+	/**
+	 * @return a cursor whose events have the given source.
+	 */
+	XmlCursor open(Reader reader, Parser<MarkupNode> source) throws ParsingException {
+		try {
+			// XMLInputFactory is not required to be thread safe
+			synchronized (factory) {
+				return new XmlCursor(source, factory.createXMLStreamReader(reader));
+			}
+		} catch (XMLStreamException exception) {
+			throw new ParsingException(exception);
+		}
+	}
+
+	@Override
+	public String getIdentifier() {
+		return StaxXmlParser.class.getName();
+	}
+
+	/**
+	 * @return the features.
+	 */
+	@Override
+	public Set<Feature> getConfiguration() {
+		return Collections.unmodifiableSet(features);
+	}
+}
@@ -0,0 +1,137 @@
+package net.aeten.core.parsing.xml;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingEvent;
+import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.support.AbstractCursor;
+
+/**
+ * Cursor over the events of an XML document, read from the underlying {@link XMLStreamReader} only when they are pulled. The
+ * events are the ones {@link XmlParser} fires. Skipped elements are read without building their events.
+ */
+public final class XmlCursor extends AbstractCursor {
+	private static class Tag {
+		final Tag parent;
+		final String name;
+
+		Tag(Tag parent, String name) {
+			this.parent = parent;
+			this.name = name;
+		}
+	}
+
+	private final XMLStreamReader reader;
+	private Tag currentTag = null;
+
+	XmlCursor(Parser<MarkupNode> source, XMLStreamReader reader) {
+		super(source);
+		this.reader = reader;
+		dispatcher.fire(ParsingEvent.START_NODE, MarkupNode.DOCUMENT, null, null);
+	}
+
+	@Override
+	protected boolean step() throws ParsingException {
+		try {
+			if (!reader.hasNext()) { return false; }
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				if (dispatcher.isSkipping()) {
+					skipElement();
+				} else {
+					startElement();
+				}
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				endElement();
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+				characters();
+				break;
+			case XMLStreamConstants.END_DOCUMENT:
+				dispatcher.fire(ParsingEvent.END_NODE, MarkupNode.DOCUMENT, null, null);
+				break;
+			default:
+				break;
+			}
+			return true;
+		} catch (XMLStreamException exception) {
+			throw new ParsingException(exception);
+		}
+	}
+
+	@Override
+	protected void release() throws ParsingException {
+		try {
+			reader.close();
+		} catch (XMLStreamException exception) {
+			throw new ParsingException(exception);
+		}
+	}
+
+	/** Reads up to the end of the element just started, whose events would all be dropped. */
+	private void skipElement() throws XMLStreamException {
+		for (int nesting = 1; nesting > 0;) {
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				nesting++;
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				nesting--;
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	private void startElement() {
+		String name = qualifiedName(reader.getPrefix(), reader.getLocalName());
+		currentTag = new Tag(currentTag, name);
+		fire(ParsingEvent.START_NODE, MarkupNode.TAG, name, currentTag.parent);
+		int count = reader.getAttributeCount();
+		if (count > 0) {
+			fire(ParsingEvent.START_NODE, MarkupNode.MAP, null, currentTag);
+		}
+		for (int i = 0; i < count; i++) {
+			String attribute = qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i));
+			fire(ParsingEvent.START_NODE, MarkupNode.TAG, attribute, currentTag);
+			dispatcher.fireLeaf(MarkupNode.TEXT, reader.getAttributeValue(i), currentTag.name);
+			fire(ParsingEvent.END_NODE, MarkupNode.TAG, attribute, currentTag);
+		}
+		if (count > 0) {
+			fire(ParsingEvent.END_NODE, MarkupNode.MAP, null, currentTag);
+		}
+		fire(ParsingEvent.START_NODE, MarkupNode.LIST, null, currentTag);
+	}
+
+	private void endElement() {
+		fire(ParsingEvent.END_NODE, MarkupNode.LIST, null, currentTag);
+		fire(ParsingEvent.END_NODE, MarkupNode.TAG, currentTag.name, currentTag.parent);
+		currentTag = currentTag.parent;
+	}
+
+	private void characters() {
+		char[] chars = reader.getTextCharacters();
+		int start = reader.getTextStart(), end = start + reader.getTextLength();
+		for (int i = start; i < end; i++) {
+			if (chars[i] > ' ') {
+				dispatcher.fireLeaf(MarkupNode.TEXT, chars, start, end, (currentTag == null)? null: currentTag.name);
+				return;
+			}
+		}
+	}
+
+	private void fire(ParsingEvent event, MarkupNode nodeType, String value, Tag parent) {
+		dispatcher.fire(event, nodeType, value, (parent == null)? null: parent.name);
+	}
+
+	private static String qualifiedName(String prefix, String localName) {
+		return (prefix == null || prefix.isEmpty())? localName: prefix + ':' + localName;
+	}
+}
@@ -6,7 +6,11 @@ import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -19,6 +23,10 @@ import net.aeten.core.parsing.Parser;
 import net.aeten.core.parsing.ParsingData;
 import net.aeten.core.parsing.ParsingEvent;
 import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.support.ConfiguredParser;
+import net.aeten.core.parsing.support.EventDispatcher;
+import net.aeten.core.parsing.support.ParsingCursor;
+import net.aeten.core.parsing.support.PullParser;
 import net.aeten.core.spi.Provider;
 
 import org.xml.sax.Attributes;
@@ -27,12 +35,63 @@ import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
 /**
+ * SAX based parser. The elements skipped by a {@link net.aeten.core.parsing.support.ControlledHandler} are still read by SAX,
+ * but no event data is built for them; {@link StaxXmlParser} does not read them at all.
  * 
  * @author Thomas Pérennou
  */
 @Provider(Parser.class)
 @Format("xml")
-public class XmlParser implements Parser<MarkupNode> {
+public class XmlParser implements PullParser, ConfiguredParser {
+	/**
+	 * Features of the underlying {@link SAXParserFactory}. None is set by default, which keeps the JAXP defaults.
+	 */
+	public static enum Feature {
+		NAMESPACE_AWARE,
+		/** Do not load the external DTD of non-validated documents. */
+		DISABLE_EXTERNAL_DTD,
+		/** Do not include the external general and parameter entities. */
+		DISABLE_EXTERNAL_ENTITIES
+	}
+
+	/** Thrown out of SAX once the handler has stopped the parse. */
+	private static final class Stopped extends SAXException {
+		private static final long serialVersionUID = 1L;
+	}
+
+	private static final int POOL_CAPACITY = 2 * Runtime.getRuntime().availableProcessors();
+
+	private final SAXParserFactory factory;
+	private final BlockingQueue<SAXParser> pool = new ArrayBlockingQueue<>(POOL_CAPACITY);
+	private final Set<Feature> features = EnumSet.noneOf(Feature.class);
+	/** Created by the first cursor, most parsers only pushing. */
+	private volatile StaxXmlParser pull = null;
+
+	public XmlParser() {
+		this(EnumSet.noneOf(Feature.class));
+	}
+
+	/**
+	 * @throws IllegalArgumentException if a feature is not supported by the JAXP implementation.
+	 */
+	public XmlParser(Set<Feature> features) {
+		this.features.addAll(features);
+		factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(features.contains(Feature.NAMESPACE_AWARE));
+		try {
+			if (features.contains(Feature.DISABLE_EXTERNAL_DTD)) {
+				factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+			}
+			if (features.contains(Feature.DISABLE_EXTERNAL_ENTITIES)) {
+				factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+				factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+			}
+		} catch (ParserConfigurationException
+					| SAXException exception) {
+			throw new IllegalArgumentException("Unsupported features " + features, exception);
+		}
+	}
+
 	private class Tag {
 		protected final Tag parent;
 		protected final String name;
@@ -44,64 +103,115 @@ public class XmlParser implements Parser<MarkupNode> {
 	}
 
 	@Override
-	public void parse(Reader reader, final Handler<ParsingData<MarkupNode>> handler) throws ParsingException {
+	public void parse(Reader reader, Handler<ParsingData<MarkupNode>> handler) throws ParsingException {
+		final EventDispatcher dispatcher = new EventDispatcher(this, handler);
+		SAXParser parser = null;
 		try {
-			SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
-
+			parser = acquire();
 			parser.parse(new InputSource(reader), new DefaultHandler() {
 				Tag currentTag = null;
 
 				@Override
 				public void startDocument() throws SAXException {
-					fireEvent(handler, ParsingEvent.START_NODE, MarkupNode.DOCUMENT, null, null);
+					fireEvent(dispatcher, ParsingEvent.START_NODE, MarkupNode.DOCUMENT, null, null);
+					checkStopped();
 				}
 
 				@Override
 				public void endDocument() throws SAXException {
-					fireEvent(handler, ParsingEvent.END_NODE, MarkupNode.DOCUMENT, null, null);
+					fireEvent(dispatcher, ParsingEvent.END_NODE, MarkupNode.DOCUMENT, null, null);
 				}
 
 				@Override
 				public void startElement(String uri, String localName, String name, Attributes attributes) throws SAXException {
 					currentTag = new Tag(currentTag, name);
-					fireEvent(handler, ParsingEvent.START_NODE, MarkupNode.TAG, name, currentTag.parent);
+					fireEvent(dispatcher, ParsingEvent.START_NODE, MarkupNode.TAG, name, currentTag.parent);
 					if (attributes.getLength() > 0) {
-						fireEvent(handler, ParsingEvent.START_NODE, MarkupNode.MAP, null, currentTag);
+						fireEvent(dispatcher, ParsingEvent.START_NODE, MarkupNode.MAP, null, currentTag);
 					}
 					for (int i = 0; i < attributes.getLength(); i++) {
-						fireEvent(handler, ParsingEvent.START_NODE, MarkupNode.TAG, attributes.getQName(i), currentTag);
-						fireEvent(handler, ParsingEvent.START_NODE, MarkupNode.TEXT, attributes.getValue(i), currentTag);
-						fireEvent(handler, ParsingEvent.END_NODE, MarkupNode.TEXT, attributes.getValue(i), currentTag);
-						fireEvent(handler, ParsingEvent.END_NODE, MarkupNode.TAG, attributes.getQName(i), currentTag);
+						fireEvent(dispatcher, ParsingEvent.START_NODE, MarkupNode.TAG, attributes.getQName(i), currentTag);
+						dispatcher.fireLeaf(MarkupNode.TEXT, attributes.getValue(i), currentTag.name);
+						fireEvent(dispatcher, ParsingEvent.END_NODE, MarkupNode.TAG, attributes.getQName(i), currentTag);
 					}
 					if (attributes.getLength() > 0) {
-						fireEvent(handler, ParsingEvent.END_NODE, MarkupNode.MAP, null, currentTag);
+						fireEvent(dispatcher, ParsingEvent.END_NODE, MarkupNode.MAP, null, currentTag);
 					}
-					fireEvent(handler, ParsingEvent.START_NODE, MarkupNode.LIST, null, currentTag);
+					fireEvent(dispatcher, ParsingEvent.START_NODE, MarkupNode.LIST, null, currentTag);
+					checkStopped();
 				}
 
 				@Override
 				public void endElement(String uri, String localName, String name) throws SAXException {
-					fireEvent(handler, ParsingEvent.END_NODE, MarkupNode.LIST, null, currentTag);
-					fireEvent(handler, ParsingEvent.END_NODE, MarkupNode.TAG, name, currentTag.parent);
+					fireEvent(dispatcher, ParsingEvent.END_NODE, MarkupNode.LIST, null, currentTag);
+					fireEvent(dispatcher, ParsingEvent.END_NODE, MarkupNode.TAG, name, currentTag.parent);
 					currentTag = currentTag.parent;
+					checkStopped();
 				}
 
 				@Override
 				public void characters(char[] ch, int start, int length) throws SAXException {
-					String text = new String(ch, start, length);
-					if (text.trim().length() == 0) return;
-					fireEvent(handler, ParsingEvent.START_NODE, MarkupNode.TEXT, text, currentTag);
-					fireEvent(handler, ParsingEvent.END_NODE, MarkupNode.TEXT, text, currentTag);
+					if (isBlank(ch, start, start + length)) return;
+					dispatcher.fireLeaf(MarkupNode.TEXT, ch, start, start + length, (currentTag == null)? null: currentTag.name);
+					checkStopped();
+				}
+
+				private void checkStopped() throws Stopped {
+					if (dispatcher.isStopped()) { throw new Stopped(); }
 				}
 			});
+		} catch (Stopped stopped) {
+			// The remaining input is left unread
 		} catch (ParserConfigurationException
 					| SAXException
 					| IOException exception) {
 			throw new ParsingException(exception);
+		} finally {
+			if (parser != null) {
+				release(parser);
+			}
 		}
 	}
 
+	/**
+	 * Pulls the events through StAX, see {@link StaxXmlParser}.
+	 *
+	 * @throws IllegalArgumentException if a feature is not supported by the StAX implementation.
+	 */
+	@Override
+	public ParsingCursor open(Reader reader) throws ParsingException {
+		StaxXmlParser pull = this.pull;
+		if (pull == null) {
+			synchronized (features) {
+				pull = this.pull;
+				if (pull == null) {
+					pull = this.pull = new StaxXmlParser(features);
+				}
+			}
+		}
+		return pull.open(reader, this);
+	}
+
+	/** @return a pooled parser, or a new one if none is available. */
+	private SAXParser acquire() throws ParserConfigurationException, SAXException {
+		SAXParser parser = pool.poll();
+		if (parser != null) { return parser; }
+		// SAXParserFactory is not required to be thread safe
+		synchronized (factory) {
+			return factory.newSAXParser();
+		}
+	}
+
+	/** Returns the parser to the pool, unless it cannot be reset or the pool is full. */
+	private void release(SAXParser parser) {
+		try {
+			parser.reset();
+		} catch (UnsupportedOperationException exception) {
+			return;
+		}
+		pool.offer(parser);
+	}
+
 	public static void main(String[] args) throws Exception {
 		final Queue<String> currentTag = Collections.asLifoQueue(new ArrayDeque<String>());
 		XmlParser parser = new XmlParser();
@@ -194,7 +304,23 @@ public class XmlParser implements Parser<MarkupNode> {
 		return XmlParser.class.getName();
 	}
 
-	private void fireEvent(Handler<ParsingData<MarkupNode>> handler, ParsingEvent event, MarkupNode nodeType, String value, Tag parent) {
-		handler.handleEvent(new ParsingData<MarkupNode>(this, event, nodeType, value, (parent == null)? null: parent.name));
+	/**
+	 * @return the features.
+	 */
+	@Override
+	public Set<Feature> getConfiguration() {
+		return Collections.unmodifiableSet(features);
+	}
+
+	/** Same as {@code new String(ch, start, end - start).trim().isEmpty()}, without copy. */
+	private static boolean isBlank(char[] ch, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (ch[i] > ' ') { return false; }
+		}
+		return true;
+	}
+
+	private void fireEvent(EventDispatcher dispatcher, ParsingEvent event, MarkupNode nodeType, String value, Tag parent) {
+		dispatcher.fire(event, nodeType, value, (parent == null)? null: parent.name);
 	}
 }
@@ -0,0 +1,528 @@
+package net.aeten.core.parsing.yaml;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.support.CompactDocument;
+import net.aeten.core.parsing.support.EventDispatcher;
+
+/**
+ * YAML document whose top level entries, its sections, are only parsed when navigated. Loading follows the structure of the
+ * input without handling its entries, and records where each section starts and ends. A section is parsed into a
+ * {@link CompactDocument} on its first access, as if it was alone in the input, and kept.
+ *
+ * The lines starting with "---" or "..." separate documents: the sections of all of them follow each other, each telling
+ * its document.
+ *
+ * An edit of the input gives a new document, where only the sections the edit may have changed are indexed again. Those
+ * start from the section preceding the edit, up to the first unchanged section found starting at the same place; the other
+ * sections are kept, even parsed. The listeners of an edit get the changes between the old and the new entries.
+ */
+public class LazyYamlDocument {
+	private final YamlParser parser = new YamlParser();
+	private final ByteBuffer buffer;
+	private final List<Section> sections = new ArrayList<>();
+
+	private LazyYamlDocument(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Indexes UTF-8 encoded YAML from the buffer position to its limit. The buffer is kept, for the sections to be parsed.
+	 */
+	public static LazyYamlDocument load(ByteBuffer buffer) throws ParsingException {
+		LazyYamlDocument document = new LazyYamlDocument(buffer.duplicate());
+		document.index();
+		return document;
+	}
+
+	/**
+	 * Indexes an UTF-8 encoded YAML file, memory-mapped as a whole.
+	 */
+	public static LazyYamlDocument load(Path path) throws ParsingException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) { throw new ParsingException("File larger than a mapping", path.toString(), 0); }
+			return load(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+		} catch (IOException exception) {
+			throw new ParsingException(exception);
+		}
+	}
+
+	/**
+	 * Applies an edit to a copy of the input: the bytes [offset, offset + removed[ from the start of the input are replaced by
+	 * the UTF-8 encoded text.
+	 *
+	 * @param listener handler of the changes of the entries, null for none.
+	 * @return the edited document, this one being left unchanged.
+	 */
+	public LazyYamlDocument edit(int offset, int removed, String inserted, Handler<Change> listener) throws ParsingException {
+		int inputStart = buffer.position(), length = buffer.remaining();
+		if (offset < 0 || removed < 0 || offset + removed > length) { throw new IndexOutOfBoundsException("Edit [" + offset + ", " + (offset + removed) + "[ out of " + length + " bytes"); }
+		byte[] bytes = inserted.getBytes(StandardCharsets.UTF_8);
+		int delta = bytes.length - removed;
+		ByteBuffer edited = ByteBuffer.allocate(length + delta);
+		ByteBuffer source = buffer.duplicate();
+		source.limit(inputStart + offset);
+		edited.put(source).put(bytes);
+		source.limit(buffer.limit()).position(inputStart + offset + removed);
+		edited.put(source).flip();
+		LazyYamlDocument document = new LazyYamlDocument(edited);
+
+		// The section preceding the edit may end differently: an edit at the start of a line may indent it
+		int first = 0;
+		while (first < sections.size() && sections.get(first).start - inputStart < offset) {
+			first++;
+		}
+		first = Math.max(first - 1, 0);
+		int from = (first == 0)? 0: sections.get(first).start - inputStart;
+		Numbering numbering = new Numbering();
+		if (first > 0) {
+			numbering.resume(sections.get(first));
+		}
+		for (int i = 0; i < first; i++) {
+			Section section = sections.get(i);
+			document.sections.add(document.copy(section, -inputStart, section.document, section.item));
+		}
+		// The sections following the edit are unchanged from the first one starting at the same place in the new input
+		int unchanged = first;
+		while (unchanged < sections.size() && sections.get(unchanged).start - inputStart < offset + removed) {
+			unchanged++;
+		}
+		int[] resync = new int[sections.size() - unchanged];
+		for (int i = 0; i < resync.length; i++) {
+			resync[i] = sections.get(unchanged + i).start - inputStart + delta;
+		}
+		int found = document.index(from, resync, numbering);
+		int last = (found == -1)? sections.size(): unchanged + found;
+		List<Section> oldSections = sections.subList(first, last);
+		List<Section> newSections = new ArrayList<>(document.sections.subList(first, document.sections.size()));
+		if (last < sections.size()) {
+			// The following sections move by as many documents, and those of the same document by as many items
+			Section resumed = sections.get(last);
+			numbering.section();
+			int documentShift = numbering.document - resumed.document, itemShift = numbering.item - resumed.item;
+			for (int i = last; i < sections.size(); i++) {
+				Section section = sections.get(i);
+				document.sections.add(document.copy(section, delta - inputStart, section.document + documentShift, section.item + ((section.document == resumed.document)? itemShift: 0)));
+			}
+		}
+		if (listener != null) {
+			diff(oldSections, newSections, listener);
+		}
+		return document;
+	}
+
+	/**
+	 * @return the sections, in the order of the input.
+	 */
+	public List<Section> getSections() {
+		return Collections.unmodifiableList(sections);
+	}
+
+	/**
+	 * @return the first section of the key, null if none.
+	 */
+	public Section getSection(String key) {
+		for (Section section : sections) {
+			if (key.equals(section.key)) { return section; }
+		}
+		return null;
+	}
+
+	/**
+	 * Top level entry of the input: a mapping entry or a sequence item.
+	 */
+	public class Section {
+		private final String key;
+		private final int start, end;
+		/** Index of the document, and of the item in the sequence of the document, or of the next one for an entry. */
+		private final int document, item;
+		private CompactDocument node;
+
+		private Section(String key, int start, int end, int document, int item) {
+			this.key = key;
+			this.start = start;
+			this.end = end;
+			this.document = document;
+			this.item = item;
+		}
+
+		/**
+		 * @return the key of a mapping entry, null for a sequence item.
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * @return the index of the document holding the section, in the input.
+		 */
+		public int getDocument() {
+			return document;
+		}
+
+		/**
+		 * @return the index of the item in the sequence of its document, -1 for a mapping entry.
+		 */
+		public int getIndex() {
+			return (key == null)? item: -1;
+		}
+
+		/**
+		 * @return true once the section has been parsed.
+		 */
+		public boolean isLoaded() {
+			return node != null;
+		}
+
+		/**
+		 * @return the node of the entry, a {@link MarkupNode#TAG TAG} for a mapping entry, parsing the section on the first call.
+		 */
+		public CompactDocument.Node getNode() throws ParsingException {
+			if (node == null) {
+				ByteBuffer bytes = buffer.duplicate();
+				bytes.limit(end).position(start);
+				CompactDocument.Builder builder = CompactDocument.builder();
+				parser.parse(bytes, builder);
+				node = builder.build();
+			}
+			CompactDocument.Node root = node.getRoot().getChildren().get(0).getChildren().get(0);
+			MarkupNode kind = root.getNodeType();
+			return (kind == MarkupNode.MAP || kind == MarkupNode.LIST)? root.getChildren().get(0): root;
+		}
+
+		@Override
+		public String toString() {
+			return (key == null)? "-": key;
+		}
+	}
+
+	/**
+	 * Change of an entry made by an edit.
+	 */
+	public static class Change {
+		public enum Kind {
+			ADDED, REMOVED, CHANGED
+		}
+
+		private final Kind kind;
+		private final int document;
+		private final List<String> path;
+		private final CompactDocument.Node oldNode, newNode;
+
+		Change(Kind kind, int document, List<String> path, CompactDocument.Node oldNode, CompactDocument.Node newNode) {
+			this.kind = kind;
+			this.document = document;
+			this.path = Collections.unmodifiableList(path);
+			this.oldNode = oldNode;
+			this.newNode = newNode;
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		/**
+		 * @return the index of the document holding the entry, in the edited input for an added entry, in the input before
+		 *         the edit otherwise.
+		 */
+		public int getDocument() {
+			return document;
+		}
+
+		/**
+		 * @return the keys of the mappings and the indexes of the sequences leading to the entry, from the top level of its
+		 *         document.
+		 */
+		public List<String> getPath() {
+			return path;
+		}
+
+		/**
+		 * @return the value before the edit, null if added.
+		 */
+		public CompactDocument.Node getOldNode() {
+			return oldNode;
+		}
+
+		/**
+		 * @return the value after the edit, null if removed.
+		 */
+		public CompactDocument.Node getNewNode() {
+			return newNode;
+		}
+
+		@Override
+		public String toString() {
+			return kind + " " + path;
+		}
+	}
+
+	private void index() throws ParsingException {
+		index(buffer.position(), new int[0], new Numbering());
+	}
+
+	/**
+	 * Follows the entries with the YAML scanner, a section starting on each line which is neither indented nor inside a flow
+	 * collection. The scan starts from the input start or a section start, and stops at the first section starting at one of
+	 * the given positions, which is not added.
+	 *
+	 * @param resync ascending positions.
+	 * @param numbering numbering of the section starting the scan, left as it is before the stop.
+	 * @return the index of the position where the scan stopped, -1 if it reached the end of the input.
+	 */
+	private int index(int from, int[] resync, Numbering numbering) throws ParsingException {
+		YamlScanner.Bytes scanner = new YamlScanner.Bytes(new Structure(parser));
+		int inputStart = buffer.position(), limit = buffer.limit();
+		int sectionStart = -1, sectionDocument = 0, sectionItem = 0, next = 0;
+		String key = null;
+		ByteBuffer bytes = buffer.duplicate();
+		bytes.position(from);
+		while (bytes.hasRemaining()) {
+			int position = bytes.position();
+			int c = bytes.get(position);
+			if (scanner.isBlock() && (position == inputStart || bytes.get(position - 1) == '\n') && c > ' ' && c != '#') {
+				if (sectionStart != -1) {
+					sections.add(new Section(key, sectionStart, position, sectionDocument, sectionItem));
+					sectionStart = -1;
+				}
+				while (next < resync.length && resync[next] < position) {
+					next++;
+				}
+				if (next < resync.length && resync[next] == position) { return next; }
+				if (isDocumentMarker(bytes, position, limit)) {
+					numbering.marker(c == '-');
+				} else {
+					sectionStart = position;
+					key = key(bytes, position, limit);
+					numbering.section();
+					sectionDocument = numbering.document;
+					sectionItem = (key == null)? numbering.item++: numbering.item;
+				}
+			}
+			scanner.step(bytes);
+		}
+		if (sectionStart != -1) {
+			sections.add(new Section(key, sectionStart, limit, sectionDocument, sectionItem));
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the section of another document, moved by the given number of bytes and numbered again, parsed if it was.
+	 */
+	private Section copy(Section section, int shift, int document, int item) {
+		Section copy = new Section(section.key, section.start + shift, section.end + shift, document, item);
+		copy.node = section.node;
+		return copy;
+	}
+
+	/**
+	 * Document and item of the sections met by a scan, as {@link YamlParserImpl} opens the documents: a "---" line opens one,
+	 * a "..." line closes it, and an entry found while none is open opens one.
+	 */
+	private static class Numbering {
+		int document = -1, item = 0;
+		boolean opened = false;
+
+		/**
+		 * Continues from the start of the section, which opened its document.
+		 */
+		void resume(Section section) {
+			document = section.document;
+			item = section.item;
+			opened = true;
+		}
+
+		void marker(boolean start) {
+			if (start) {
+				document++;
+				item = 0;
+			}
+			opened = start;
+		}
+
+		void section() {
+			if (!opened) {
+				marker(true);
+			}
+		}
+	}
+
+	/**
+	 * Fires the changes from the old sections to the new ones, within each document: the entries are matched by key and the
+	 * items by index.
+	 */
+	private static void diff(List<Section> oldSections, List<Section> newSections, Handler<Change> listener) throws ParsingException {
+		Map<String, ArrayDeque<Section>> oldEntries = new LinkedHashMap<>();
+		for (Section section : oldSections) {
+			ArrayDeque<Section> entries = oldEntries.get(id(section));
+			if (entries == null) {
+				oldEntries.put(id(section), entries = new ArrayDeque<>());
+			}
+			entries.add(section);
+		}
+		for (Section section : newSections) {
+			ArrayDeque<Section> entries = oldEntries.get(id(section));
+			Section old = (entries == null)? null: entries.poll();
+			List<String> path = Arrays.asList((section.key == null)? String.valueOf(section.item): section.key);
+			if (old == null) {
+				listener.handleEvent(new Change(Change.Kind.ADDED, section.document, path, null, value(section.getNode())));
+			} else {
+				diff(old.document, path, value(old.getNode()), value(section.getNode()), listener);
+			}
+		}
+		for (ArrayDeque<Section> entries : oldEntries.values()) {
+			for (Section section : entries) {
+				List<String> path = Arrays.asList((section.key == null)? String.valueOf(section.item): section.key);
+				listener.handleEvent(new Change(Change.Kind.REMOVED, section.document, path, value(section.getNode()), null));
+			}
+		}
+	}
+
+	/**
+	 * @return the identity of the section within the sections of its document.
+	 */
+	private static String id(Section section) {
+		return section.document + ((section.key == null)? " -" + section.item: " :" + section.key);
+	}
+
+	/**
+	 * Fires the changes from the old node to the new one: the entries of mappings are matched by key, and the items of
+	 * sequences by index; other nodes change as a whole.
+	 */
+	private static void diff(int document, List<String> path, CompactDocument.Node oldNode, CompactDocument.Node newNode, Handler<Change> listener) {
+		if (oldNode == null || newNode == null) {
+			if (oldNode != newNode) {
+				listener.handleEvent(new Change(Change.Kind.CHANGED, document, path, oldNode, newNode));
+			}
+			return;
+		}
+		MarkupNode kind = oldNode.getNodeType();
+		if (kind != newNode.getNodeType() || !equals(oldNode.getType(), newNode.getType()) || !equals(oldNode.getValue(), newNode.getValue())) {
+			listener.handleEvent(new Change(Change.Kind.CHANGED, document, path, oldNode, newNode));
+		} else if (kind == MarkupNode.MAP) {
+			Map<String, CompactDocument.Node> oldEntries = entries(oldNode), newEntries = entries(newNode);
+			for (Map.Entry<String, CompactDocument.Node> entry : newEntries.entrySet()) {
+				if (oldEntries.containsKey(entry.getKey())) {
+					diff(document, child(path, entry.getKey()), oldEntries.remove(entry.getKey()), entry.getValue(), listener);
+				} else {
+					listener.handleEvent(new Change(Change.Kind.ADDED, document, child(path, entry.getKey()), null, entry.getValue()));
+				}
+			}
+			for (Map.Entry<String, CompactDocument.Node> entry : oldEntries.entrySet()) {
+				listener.handleEvent(new Change(Change.Kind.REMOVED, document, child(path, entry.getKey()), entry.getValue(), null));
+			}
+		} else if (kind == MarkupNode.LIST) {
+			List<CompactDocument.Node> oldItems = oldNode.getChildren(), newItems = newNode.getChildren();
+			for (int i = 0; i < Math.max(oldItems.size(), newItems.size()); i++) {
+				List<String> itemPath = child(path, String.valueOf(i));
+				if (i >= oldItems.size()) {
+					listener.handleEvent(new Change(Change.Kind.ADDED, document, itemPath, null, value(newItems.get(i))));
+				} else if (i >= newItems.size()) {
+					listener.handleEvent(new Change(Change.Kind.REMOVED, document, itemPath, value(oldItems.get(i)), null));
+				} else {
+					diff(document, itemPath, value(oldItems.get(i)), value(newItems.get(i)), listener);
+				}
+			}
+		} else if (!sameTree(oldNode, newNode)) {
+			listener.handleEvent(new Change(Change.Kind.CHANGED, document, path, oldNode, newNode));
+		}
+	}
+
+	/**
+	 * @return the value of a mapping entry, the node itself otherwise.
+	 */
+	private static CompactDocument.Node value(CompactDocument.Node node) {
+		return (node != null && node.getNodeType() == MarkupNode.TAG)? node.asMappingEntry().getValue(): node;
+	}
+
+	private static Map<String, CompactDocument.Node> entries(CompactDocument.Node map) {
+		Map<String, CompactDocument.Node> entries = new LinkedHashMap<>();
+		for (CompactDocument.Node child : map.getChildren()) {
+			if (child.getNodeType() == MarkupNode.TAG) {
+				CompactDocument.MappingEntry entry = child.asMappingEntry();
+				entries.put(entry.getKey(), entry.getValue());
+			}
+		}
+		return entries;
+	}
+
+	private static boolean sameTree(CompactDocument.Node oldNode, CompactDocument.Node newNode) {
+		if (oldNode.getNodeType() != newNode.getNodeType() || !equals(oldNode.getType(), newNode.getType()) || !equals(oldNode.getValue(), newNode.getValue())) { return false; }
+		List<CompactDocument.Node> oldChildren = oldNode.getChildren(), newChildren = newNode.getChildren();
+		if (oldChildren.size() != newChildren.size()) { return false; }
+		for (int i = 0; i < oldChildren.size(); i++) {
+			if (!sameTree(oldChildren.get(i), newChildren.get(i))) { return false; }
+		}
+		return true;
+	}
+
+	private static List<String> child(List<String> path, String name) {
+		List<String> child = new ArrayList<>(path.size() + 1);
+		child.addAll(path);
+		child.add(name);
+		return child;
+	}
+
+	private static boolean equals(String first, String second) {
+		return (first == null)? second == null: first.equals(second);
+	}
+
+	private static boolean isDocumentMarker(ByteBuffer bytes, int position, int limit) {
+		if (position + 3 > limit) { return false; }
+		byte c = bytes.get(position);
+		return (c == '-' || c == '.') && bytes.get(position + 1) == c && bytes.get(position + 2) == c;
+	}
+
+	/**
+	 * @return the key of the entry starting the line, as {@link YamlParserImpl} reads it, null for a sequence item.
+	 */
+	private static String key(ByteBuffer bytes, int position, int limit) {
+		if (bytes.get(position) == '-' && (position + 1 == limit || bytes.get(position + 1) <= ' ')) { return null; }
+		int end = position;
+		while (end < limit && bytes.get(end) != '\n' && bytes.get(end) != ':') {
+			end++;
+		}
+		if (end == limit || bytes.get(end) != ':') { return null; }
+		int keyEnd = end;
+		while (keyEnd > position && (bytes.get(keyEnd - 1) & 0xFF) <= ' ') {
+			keyEnd--;
+		}
+		byte[] key = new byte[keyEnd - position];
+		ByteBuffer range = bytes.duplicate();
+		range.position(position);
+		range.get(key);
+		return new String(key, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Parser following the structure only, its entries being left unhandled.
+	 */
+	private static class Structure extends YamlParserImpl {
+		Structure(YamlParser parser) {
+			super(parser, null, null, new EventDispatcher(parser, null));
+		}
+
+		@Override
+		void parse(CharSequence line) {}
+
+		@Override
+		void flowItem(CharSequence item, int level, boolean sequenceItem) {}
+	}
+}
@@ -0,0 +1,214 @@
+package net.aeten.core.parsing.yaml;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingEvent;
+import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.support.EventDispatcher;
+import net.aeten.core.parsing.support.SymbolTable;
+import net.aeten.core.parsing.yaml.YamlParser.Delivery;
+
+/**
+ * Parses the documents of a YAML stream in parallel. The bytes are cut into slices, each of them moved forward to the next
+ * line starting with "---" so that the slices hold whole documents and can be found by the tasks themselves. A task parses
+ * the documents of its slice one by one, each with a parser of its own, and records their events, which are then replayed.
+ *
+ * The events of a slice are delivered to the handler on the calling thread, either in the order of the slices or as they are
+ * done, a bounded number of slices being parsed ahead.
+ */
+class ParallelYamlParserImpl {
+	static final int SLICE_SIZE = 1 << 20;
+
+	private final YamlParser parser;
+	private final EventDispatcher dispatcher;
+	private final ForkJoinPool pool;
+	private final Delivery delivery;
+	private final int sliceSize;
+
+	ParallelYamlParserImpl(YamlParser parser, Handler<ParsingData<MarkupNode>> handler, ForkJoinPool pool, Delivery delivery, int sliceSize) {
+		this.parser = parser;
+		this.dispatcher = new EventDispatcher(parser, handler);
+		this.pool = pool;
+		this.delivery = delivery;
+		this.sliceSize = sliceSize;
+	}
+
+	/**
+	 * Parses the documents of [position, limit[. Unless the limit is the end of input, it must be the start of a document.
+	 */
+	void parse(ByteBuffer buffer) throws ParsingException {
+		int start = buffer.position(), limit = buffer.limit();
+		int ahead = 4 * pool.getParallelism();
+		Queue<Future<Events>> pending = new ArrayDeque<>();
+		CompletionService<Events> completion = new ExecutorCompletionService<>(pool);
+		try {
+			for (int slice = start; slice < limit || !pending.isEmpty();) {
+				while (slice < limit && pending.size() < ahead) {
+					Slice task = new Slice(buffer, start, slice, (int) Math.min((long) slice + sliceSize, limit), limit);
+					pending.add((delivery == Delivery.ORDERED)? execute(task): completion.submit(task));
+					slice = task.end;
+				}
+				Future<Events> done = (delivery == Delivery.ORDERED)? pending.peek(): completion.take();
+				pending.remove(done);
+				done.get().replay(dispatcher);
+				if (dispatcher.isStopped()) { return; }
+			}
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new ParsingException(exception);
+		} catch (ExecutionException exception) {
+			Throwable cause = exception.getCause();
+			if (cause instanceof ParsingException) { throw (ParsingException) cause; }
+			if (cause instanceof RuntimeException) { throw (RuntimeException) cause; }
+			if (cause instanceof Error) { throw (Error) cause; }
+			throw new ParsingException(cause);
+		} finally {
+			for (Future<?> future : pending) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	void parse(FileChannel channel) throws ParsingException, IOException {
+		long size = channel.size(), position = 0;
+		while (position < size && !dispatcher.isStopped()) {
+			long length = Math.min(size - position, YamlParserImpl.MAPPING_WINDOW);
+			MappedByteBuffer window = channel.map(MapMode.READ_ONLY, position, length);
+			if (position + length < size) {
+				int limit = lastDocumentStart(window, (int) length);
+				if (limit == 0) { throw new ParsingException("Document longer than the mapping window", null, 0); }
+				window.limit(limit);
+			}
+			parse(window);
+			position += window.limit();
+		}
+	}
+
+	/**
+	 * Runs the task as a {@link FutureTask}, whose failure is its own exception and not a copy of it.
+	 */
+	private Future<Events> execute(Slice task) {
+		FutureTask<Events> future = new FutureTask<>(task);
+		pool.execute(future);
+		return future;
+	}
+
+	/**
+	 * @return the first position of [from, limit[ starting a line with "---", the limit if none.
+	 */
+	static int documentStart(ByteBuffer buffer, int start, int from, int limit) {
+		for (int position = from; position + 2 < limit; position++) {
+			if (buffer.get(position) == '-' && (position == start || buffer.get(position - 1) == '\n') && buffer.get(position + 1) == '-' && buffer.get(position + 2) == '-') { return position; }
+		}
+		return limit;
+	}
+
+	/**
+	 * @return the last position of ]0, limit[ starting a line with "---", 0 if none.
+	 */
+	private static int lastDocumentStart(ByteBuffer buffer, int limit) {
+		for (int position = limit - 3; position > 0; position--) {
+			if (buffer.get(position - 1) == '\n' && buffer.get(position) == '-' && buffer.get(position + 1) == '-' && buffer.get(position + 2) == '-') { return position; }
+		}
+		return 0;
+	}
+
+	/**
+	 * @return true if one of the lines of [start, end[ is neither blank nor a comment.
+	 */
+	private static boolean hasContent(ByteBuffer buffer, int start, int end) {
+		boolean lineStart = true;
+		for (int position = start; position < end; position++) {
+			byte b = buffer.get(position);
+			if (b == '\n') {
+				lineStart = true;
+			} else if (lineStart && (b & 0xFF) > ' ') {
+				if (b != '#') { return true; }
+				lineStart = false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Documents from a document start up to the first one starting after a given position.
+	 */
+	private class Slice implements Callable<Events> {
+		private final ByteBuffer buffer;
+		private final int inputStart, start, end, limit;
+
+		Slice(ByteBuffer buffer, int inputStart, int from, int to, int limit) {
+			this.buffer = buffer;
+			this.inputStart = inputStart;
+			this.start = from;
+			this.limit = limit;
+			this.end = documentStart(buffer, inputStart, to, limit);
+		}
+
+		@Override
+		public Events call() throws ParsingException {
+			Events events = new Events(parser);
+			SymbolTable symbols = new SymbolTable();
+			int document = start;
+			while (document < end) {
+				int next = documentStart(buffer, inputStart, document + 1, end);
+				// Only the comments heading the input are not part of a document starting with "---"
+				if (document != inputStart || next == limit || hasContent(buffer, document, next)) {
+					ByteBuffer bytes = buffer.duplicate();
+					bytes.limit(next).position(document);
+					YamlParserImpl documentParser = new YamlParserImpl(parser, null, null, events);
+					documentParser.symbols = symbols;
+					documentParser.parse(bytes);
+				}
+				document = next;
+			}
+			return events;
+		}
+	}
+
+	/**
+	 * Events recorded in place of being delivered, four fields by event.
+	 */
+	private static class Events extends EventDispatcher {
+		private Object[] fields = new Object[1024];
+		private int length = 0;
+
+		Events(YamlParser parser) {
+			super(parser, null);
+		}
+
+		@Override
+		public void fire(ParsingEvent event, MarkupNode nodeType, String value, String parent) {
+			if (length == fields.length) {
+				fields = Arrays.copyOf(fields, length << 1);
+			}
+			fields[length++] = event;
+			fields[length++] = nodeType;
+			fields[length++] = value;
+			fields[length++] = parent;
+		}
+
+		void replay(EventDispatcher dispatcher) {
+			for (int i = 0; i < length && !dispatcher.isStopped(); i += 4) {
+				dispatcher.fire((ParsingEvent) fields[i], (MarkupNode) fields[i + 1], (String) fields[i + 2], (String) fields[i + 3]);
+			}
+		}
+	}
+}
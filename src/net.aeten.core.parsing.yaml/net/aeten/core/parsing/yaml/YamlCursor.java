@@ -0,0 +1,23 @@
+package net.aeten.core.parsing.yaml;
+
+import java.io.Reader;
+
+import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.support.AbstractCursor;
+
+/**
+ * Cursor handling the entries of a YAML reader one by one, as their events are pulled.
+ */
+class YamlCursor extends AbstractCursor {
+	private final YamlParserImpl parser;
+
+	YamlCursor(YamlParser source, Reader reader) {
+		super(source);
+		parser = new YamlParserImpl(source, reader, handler, dispatcher);
+	}
+
+	@Override
+	protected boolean step() throws ParsingException {
+		return parser.step();
+	}
+}
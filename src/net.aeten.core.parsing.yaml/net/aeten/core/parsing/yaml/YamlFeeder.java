@@ -0,0 +1,109 @@
+package net.aeten.core.parsing.yaml;
+
+import java.nio.ByteBuffer;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.support.EventDispatcher;
+import net.aeten.core.parsing.support.ParsingFeeder;
+
+/**
+ * Feeder scanning the fed bytes as they are, up to their incomplete entry, whose bytes are kept. The next part only completes
+ * the kept bytes up to its first line end before being scanned as it is in turn, so that the kept bytes stay short unless an
+ * entry spans several lines. Line ends and flow separators are ASCII: a character cut between two parts is never decoded.
+ */
+class YamlFeeder implements ParsingFeeder {
+	private final YamlParserImpl parser;
+	private final YamlScanner.Bytes scanner;
+	// Bytes of the incomplete entry, before the position
+	private ByteBuffer pending = ByteBuffer.allocate(256);
+	private boolean ended = false;
+
+	YamlFeeder(YamlParser source, Handler<ParsingData<MarkupNode>> handler) {
+		parser = new YamlParserImpl(source, null, handler, new EventDispatcher(source, handler));
+		scanner = new YamlScanner.Bytes(parser);
+	}
+
+	@Override
+	public void feed(ByteBuffer bytes) throws ParsingException {
+		if (isDone()) {
+			bytes.position(bytes.limit());
+			return;
+		}
+		if (pending.position() > 0) {
+			keep(bytes, lineEnd(bytes));
+			scanPending(false);
+			if (pending.position() > 0 || parser.isStopped()) {
+				keep(bytes, bytes.limit());
+				scanPending(false);
+				return;
+			}
+		}
+		scanner.scan(bytes, false);
+		keep(bytes, bytes.limit());
+	}
+
+	@Override
+	public void endOfInput() throws ParsingException {
+		if (ended) { return; }
+		ended = true;
+		scanPending(true);
+		parser.end();
+	}
+
+	@Override
+	public boolean isDone() {
+		return ended || parser.isStopped();
+	}
+
+	@Override
+	public void close() {
+		ended = true;
+		pending = null;
+	}
+
+	/**
+	 * Scans the kept bytes, keeping those of the entry left incomplete.
+	 */
+	private void scanPending(boolean endOfInput) throws ParsingException {
+		pending.flip();
+		if (!parser.isStopped()) {
+			scanner.scan(pending, endOfInput);
+		}
+		if (parser.isStopped()) {
+			pending.position(pending.limit());
+		}
+		pending.compact();
+	}
+
+	/**
+	 * Appends the bytes up to the end to the kept ones, unless the parse is stopped.
+	 */
+	private void keep(ByteBuffer bytes, int end) {
+		if (parser.isStopped()) {
+			bytes.position(bytes.limit());
+			return;
+		}
+		int length = end - bytes.position();
+		if (pending.remaining() < length) {
+			pending.flip();
+			pending = ByteBuffer.allocate(Math.max(pending.capacity() << 1, pending.limit() + length)).put(pending);
+		}
+		ByteBuffer part = bytes.duplicate();
+		part.limit(end);
+		pending.put(part);
+		bytes.position(end);
+	}
+
+	/**
+	 * @return the index following the first line end from the buffer position, its limit if none.
+	 */
+	private static int lineEnd(ByteBuffer bytes) {
+		for (int index = bytes.position(); index < bytes.limit(); index++) {
+			if (bytes.get(index) == '\n') { return index + 1; }
+		}
+		return bytes.limit();
+	}
+}
@@ -0,0 +1,468 @@
+package net.aeten.core.parsing.yaml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.AbstractParser;
+import net.aeten.core.parsing.AbstractParser.Tag;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingEvent;
+import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.support.EventDispatcher;
+import net.aeten.core.parsing.support.SymbolTable;
+
+/**
+ * State of a YAML parse, on the characters of a reader or on bytes, shared by the cursor, the feeder, the parallel parse and
+ * the lazy document of the parser.
+ */
+class YamlParserImpl extends AbstractParser.ParserImplementationHelper {
+	private static final int BUFFER_SIZE = 8192;
+	static final long MAPPING_WINDOW = 1L << 30;
+	// Type names, resolved once
+	private static final String STRING = String.class.getName(), BOOLEAN = boolean.class.getName(), INT = int.class.getName(), FLOAT = float.class.getName();
+	private static final String LIST = List.class.getName(), SET = Set.class.getName(), ORDERED_SET = LinkedHashSet.class.getName();
+	private static final String MAP = Map.class.getName(), ORDERED_MAP = LinkedHashMap.class.getName(), BINARY = byte[].class.getName(), VOID = Void.class.getName();
+
+	private final EventDispatcher dispatcher;
+	private final YamlToken token = new YamlToken();
+	private final Reader input;
+	private final YamlScanner.Chars scanner = new YamlScanner.Chars(this);
+	private CharBuffer buffer;
+	private boolean endOfInput = false, documentClosed = false;
+
+	String indentation = null;
+	int currentLevel = -1, previousLevel = -1;
+	Tag<MarkupNode> current = null;
+	boolean documentOpened = false, previousValueRaised = false, previousTypeRaised = false;
+	// Keys and type tags, shared by the documents of a parse
+	SymbolTable symbols = new SymbolTable();
+
+	protected YamlParserImpl(Parser<MarkupNode> parser, Reader reader, Handler<ParsingData<MarkupNode>> handler) {
+		this(parser, reader, handler, new EventDispatcher(parser, handler));
+	}
+
+	protected YamlParserImpl(Parser<MarkupNode> parser, Reader reader, Handler<ParsingData<MarkupNode>> handler, EventDispatcher dispatcher) {
+		super(parser, reader, handler, true);
+		this.dispatcher = dispatcher;
+		input = reader;
+		if (reader != null) {
+			buffer = (CharBuffer) CharBuffer.allocate(BUFFER_SIZE).flip();
+		}
+	}
+
+	@Override
+	protected void fireEvent(ParsingEvent event, MarkupNode nodeType, String value, Tag<MarkupNode> parent) {
+		dispatcher.fire(event, nodeType, value, (parent == null)? null: parent.name);
+	}
+
+	protected void parse() throws ParsingException {
+		while (!isStopped() && read()) {
+			scanner.scan(buffer, false);
+		}
+		scanner.scan(buffer, true);
+		closeDocument(handler, current, currentLevel);
+	}
+
+	/**
+	 * @return true once the handler has stopped the parse, the remaining input being left unread.
+	 */
+	boolean isStopped() {
+		return dispatcher.isStopped();
+	}
+
+	/**
+	 * Handles the next entry of the reader, or closes the document at the end of input.
+	 *
+	 * @return false once the document is closed.
+	 */
+	boolean step() throws ParsingException {
+		while (!scanner.step(buffer, endOfInput)) {
+			if (endOfInput) {
+				if (documentClosed) { return false; }
+				closeDocument(handler, current, currentLevel);
+				documentClosed = true;
+				return true;
+			}
+			endOfInput = !read();
+		}
+		return true;
+	}
+
+	/**
+	 * Appends the following characters of the reader to the buffer, growing it if it is full of an incomplete entry.
+	 *
+	 * @return false at the end of input.
+	 */
+	private boolean read() throws ParsingException {
+		buffer.compact();
+		if (!buffer.hasRemaining()) {
+			buffer = CharBuffer.allocate(buffer.capacity() << 1).put((CharBuffer) buffer.flip());
+		}
+		try {
+			return input.read(buffer) != -1;
+		} catch (IOException exception) {
+			throw new ParsingException(exception);
+		} finally {
+			buffer.flip();
+		}
+	}
+
+	/**
+	 * Closes the document once the scanner has handled the whole input.
+	 */
+	void end() throws ParsingException {
+		closeDocument(handler, current, currentLevel);
+	}
+
+	protected void parse(ByteBuffer buffer) throws ParsingException {
+		new YamlScanner.Bytes(this).scan(buffer, true);
+		closeDocument(handler, current, currentLevel);
+	}
+
+	protected void parse(FileChannel channel) throws ParsingException, IOException {
+		YamlScanner.Bytes scanner = new YamlScanner.Bytes(this);
+		long size = channel.size(), position = 0;
+		do {
+			long length = Math.min(size - position, MAPPING_WINDOW);
+			boolean endOfInput = position + length == size;
+			MappedByteBuffer window = channel.map(MapMode.READ_ONLY, position, length);
+			scanner.scan(window, endOfInput);
+			if (isStopped()) {
+				break;
+			}
+			if (!endOfInput && window.position() == 0) { throw new ParsingException("Line longer than the mapping window", null, 0); }
+			position += window.position();
+		} while (position < size);
+		closeDocument(handler, current, currentLevel);
+	}
+
+	@Override
+	protected void parse(String line) throws ParsingException {
+		parse((CharSequence) line);
+	}
+
+	/**
+	 * Handles one entry. The given sequence may be a view over a reused buffer: it is not kept after the call.
+	 */
+	void parse(CharSequence line) throws ParsingException {
+		int end = trimEnd(line, 0, line.length());
+		int start = trimStart(line, 0, end);
+		if (start == end || line.charAt(start) == '#') { return; }
+		if (startsWith(line, "---", 0)) {
+			if (documentOpened) {
+				closeDocument(handler, current, currentLevel);
+			}
+			fireEvent(ParsingEvent.START_NODE, MarkupNode.DOCUMENT, null, null);
+			start = trimStart(line, start + 3, end);
+			documentOpened = true;
+		} else if (startsWith(line, "...", 0)) {
+			closeDocument(handler, current, currentLevel);
+			start += 3;
+			documentOpened = false;
+			previousLevel = currentLevel;
+			currentLevel = -1;
+		} else {
+			previousLevel = currentLevel;
+			currentLevel = 0;
+			if ((indentation == null) && YamlToken.isIndented(line)) {
+				indentation = line.subSequence(0, YamlToken.indentationEnd(line, 0, line.length())).toString();
+			}
+			if (indentation != null) {
+				for (int i = 0; startsWith(line, indentation, i); i += indentation.length()) {
+					currentLevel++;
+				}
+			}
+		}
+		if (start == end) { return; }
+		entry(line, start, end, false);
+	}
+
+	/**
+	 * Handles an item of a flow collection, as the line of the equivalent block collection at the given level. A sequence item
+	 * is a value, even if it holds a ':'.
+	 */
+	void flowItem(CharSequence item, int level, boolean sequenceItem) throws ParsingException {
+		int end = trimEnd(item, 0, item.length());
+		int start = trimStart(item, 0, end);
+		if (start == end && !sequenceItem) { return; }
+		previousLevel = currentLevel;
+		currentLevel = level;
+		entry(item, start, end, sequenceItem);
+	}
+
+	/**
+	 * Handles the entry [start, end[ of the line, at the current level. While events are skipped, plain values are neither
+	 * typed nor fired: only the structure is followed, as it decides where the skipped subtree ends.
+	 */
+	private void entry(CharSequence line, int start, int end, boolean sequenceItem) throws ParsingException {
+		String key;
+		int valueStart, valueEnd = end;
+		MarkupNode enclosingType;
+		int separatorIndex = sequenceItem? -1: indexOf(line, ':', start, end);
+		if (separatorIndex != -1) {
+			enclosingType = MarkupNode.MAP;
+			key = symbols.intern(line, trimStart(line, start, separatorIndex), trimEnd(line, start, separatorIndex));
+			valueStart = trimStart(line, separatorIndex + 1, end);
+		} else {
+			key = null;
+			if (!sequenceItem && line.charAt(start) != '-') {
+				if (line.charAt(start) != '#' && !token.scan(line, start, end)) { throw new ParsingException("", line.subSequence(start, end).toString(), 0); }
+				valueStart = start;
+				enclosingType = null;
+			} else {
+				enclosingType = MarkupNode.LIST;
+				valueStart = sequenceItem? start: trimStart(line, start + 1, end); // List, starts with '-'
+				if (!token.scan(line, valueStart, end) || trimStart(line, token.valueStart, token.valueEnd) != token.valueEnd) {
+					if (currentLevel < previousLevel) {
+						current = close(handler, current, previousLevel, currentLevel);
+						previousLevel = currentLevel;
+						enclosingType = null;
+					}
+					currentLevel++;
+				}
+			}
+		}
+		if (!documentOpened) {
+			fireEvent(ParsingEvent.START_NODE, MarkupNode.DOCUMENT, null, null);
+			documentOpened = true;
+		}
+
+		if (currentLevel > previousLevel) {
+			if (enclosingType != null) {
+				if (current == null) {
+					current = new Tag<MarkupNode>(null, null);
+				}
+				if (current.childrenNodeType == null) {
+					current.childrenNodeType = enclosingType;
+				} else if (current.childrenNodeType != enclosingType) {
+					error("Find " + enclosingType + " element when " + current.childrenNodeType + " was expected");
+				}
+				if (current.childrenType == null) {
+					current.childrenType = (current.childrenNodeType == MarkupNode.MAP)? MAP: LIST;
+					type(current.childrenType, current.parent);
+				}
+				fireEvent(ParsingEvent.START_NODE, current.childrenNodeType, null, current);
+			}
+			current = openTag(key, current);
+
+		} else if (currentLevel < previousLevel) {
+			if (!previousValueRaised) {
+				if (!previousTypeRaised) {
+					type(VOID, current.parent);
+				}
+				text("", current.parent);
+			}
+			current = openTag(key, close(handler, current, previousLevel, currentLevel));
+		} else {
+			if (!previousValueRaised && current != null) {
+				if (!previousTypeRaised) {
+					type(VOID, current.parent);
+				}
+				text("", current.parent);
+			}
+			current = openTag(key, closeTag(current));
+		}
+
+		previousValueRaised = previousTypeRaised = false;
+
+		if (valueStart == valueEnd || line.charAt(valueStart) == '#') { return; }
+		MarkupNode node;
+		switch (line.charAt(valueStart)) {
+		case '!':
+			node = MarkupNode.TYPE;
+			break;
+		case '&':
+			node = MarkupNode.REFERENCE;
+			break;
+		case '*':
+			node = MarkupNode.ANCHOR;
+			break;
+		default:
+			if (dispatcher.isSkipping()) {
+				previousValueRaised = true;
+				return;
+			}
+			node = MarkupNode.TEXT;
+			break;
+		}
+		switch (node) {
+		case TYPE:
+		case REFERENCE:
+		case ANCHOR:
+			if (!token.scan(line, valueStart, valueEnd)) { throw new ParsingException("Node " + node + " error", line.subSequence(valueStart, valueEnd).toString(), 1); }
+			String value = symbols.intern(line, valueStart + 1, token.nameEnd);
+			if (node == MarkupNode.TYPE) {
+				switch (value) {
+				case "!str":
+					value = STRING;
+					break;
+				case "!bool":
+					value = BOOLEAN;
+					break;
+				case "!int":
+					value = INT;
+					break;
+				case "!float":
+					value = FLOAT;
+					break;
+				case "!seq":
+					value = LIST;
+					break;
+				case "!set":
+					value = SET;
+					break;
+				case "!oset":
+					value = ORDERED_SET;
+					break;
+				case "!map":
+					value = MAP;
+					break;
+				case "!omap":
+					value = ORDERED_MAP;
+					break;
+				case "!binary":
+					value = BINARY;
+					break;
+				default:
+					current.childrenType = value;
+					break;
+				}
+				previousTypeRaised = true;
+			} else if (token.valueStart != token.valueEnd) {
+				autoType(current, line, token.valueStart, token.valueEnd, null);
+			}
+			fireEvent(ParsingEvent.START_NODE, node, value, current.parent);
+			fireEvent(ParsingEvent.END_NODE, node, value, current.parent);
+			if (token.valueStart == token.valueEnd) { return; }
+			valueStart = token.valueStart;
+			valueEnd = token.valueEnd;
+			break;
+		default:
+			autoType(current, line, valueStart, valueEnd, STRING);
+			break;
+		}
+		String parent = (current.parent == null)? null: current.parent.name;
+		if (line instanceof YamlScanner.Text) {
+			((YamlScanner.Text) line).fireLeaf(dispatcher, MarkupNode.TEXT, valueStart, valueEnd, parent);
+		} else {
+			dispatcher.fireLeaf(MarkupNode.TEXT, line, valueStart, valueEnd, parent);
+		}
+		previousValueRaised = true;
+	}
+
+	private Tag<MarkupNode> openTag(String name, Tag<MarkupNode> parent) {
+		Tag<MarkupNode> tag = new Tag<MarkupNode>(parent, name);
+		if (name != null) {
+			fireEvent(ParsingEvent.START_NODE, MarkupNode.TAG, null, tag.parent);
+			fireEvent(ParsingEvent.START_NODE, MarkupNode.TYPE, STRING, tag);
+			fireEvent(ParsingEvent.END_NODE, MarkupNode.TYPE, STRING, tag);
+			fireEvent(ParsingEvent.START_NODE, MarkupNode.TEXT, name, tag);
+			fireEvent(ParsingEvent.END_NODE, MarkupNode.TEXT, name, tag);
+		}
+		return tag;
+	}
+
+	private Tag<MarkupNode> closeTag(Tag<MarkupNode> tag) {
+		if (tag != null && tag.name != null) {
+			fireEvent(ParsingEvent.END_NODE, MarkupNode.TAG, null, tag.parent);
+		}
+		return tag == null? null: tag.parent;
+	}
+
+	private void autoType(Tag<MarkupNode> current, CharSequence line, int start, int end, String defaultType) {
+		final String type;
+		if (isBoolean(line, start, end)) {
+			type = BOOLEAN;
+		} else if (start == end) {
+			type = VOID;
+		} else {
+			type = defaultType;
+		}
+		if (type != null) {
+			fireEvent(ParsingEvent.START_NODE, MarkupNode.TYPE, type, current.parent);
+			fireEvent(ParsingEvent.END_NODE, MarkupNode.TYPE, type, current.parent);
+		}
+	}
+
+	private static boolean isBoolean(CharSequence line, int start, int end) {
+		switch (end - start) {
+		case 4:
+			return startsWith(line, "true", start) || startsWith(line, "True", start) || startsWith(line, "TRUE", start);
+		case 5:
+			return startsWith(line, "false", start) || startsWith(line, "False", start) || startsWith(line, "FALSE", start);
+		default:
+			return false;
+		}
+	}
+
+	/** Same as {@link String#startsWith(String, int)} on a {@link CharSequence}. */
+	static boolean startsWith(CharSequence line, String prefix, int offset) {
+		if (offset < 0 || offset + prefix.length() > line.length()) { return false; }
+		for (int i = 0; i < prefix.length(); i++) {
+			if (line.charAt(offset + i) != prefix.charAt(i)) { return false; }
+		}
+		return true;
+	}
+
+	/** @return the index of the first occurrence of the character in [start, end[, -1 if none. */
+	static int indexOf(CharSequence line, char character, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (line.charAt(i) == character) { return i; }
+		}
+		return -1;
+	}
+
+	/** @return the index of the first character of [start, end[ which would not be removed by {@link String#trim()}. */
+	static int trimStart(CharSequence line, int start, int end) {
+		while (start < end && line.charAt(start) <= ' ') {
+			start++;
+		}
+		return start;
+	}
+
+	/** @return the index following the last character of [start, end[ which would not be removed by {@link String#trim()}. */
+	static int trimEnd(CharSequence line, int start, int end) {
+		while (end > start && line.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		return end;
+	}
+
+	private Tag<MarkupNode> close(Handler<ParsingData<MarkupNode>> handler, Tag<MarkupNode> current, int currentLevel, int newLevel) {
+		if (current.name == null && current.parent != null && current.parent.childrenNodeType == MarkupNode.LIST) {
+			currentLevel--;
+		}
+		for (int i = currentLevel; i >= newLevel; i--) {
+			if (current.name != null) {
+				fireEvent(ParsingEvent.END_NODE, MarkupNode.TAG, current.name, current.parent);
+			}
+			current = current.parent;
+			if (current == null) {
+				break;
+			}
+			if (newLevel != i) {
+				fireEvent(ParsingEvent.END_NODE, current.childrenNodeType, null, current);
+			}
+		}
+		return current;
+	}
+
+	private void closeDocument(Handler<ParsingData<MarkupNode>> handler, Tag<MarkupNode> current, int currentLevel) {
+		close(handler, current, currentLevel, -1);
+
+		fireEvent(ParsingEvent.END_NODE, MarkupNode.DOCUMENT, null, null);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,405 @@
+package net.aeten.core.parsing.yaml;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.support.EventDispatcher;
+
+/**
+ * Splits YAML into the entries handled by {@link YamlParserImpl}: block lines, and items of flow collections. Flow items are
+ * handed with the level the lines of the equivalent block collection would have, so they are neither copied nor rewritten and
+ * the scan stays linear whatever the length of a collection.
+ *
+ * The source is consumed by complete entries. Unless it is the end of input, a scan stops before the first incomplete one, so
+ * that the caller can append what follows and resume from there. A scan also stops as soon as the handler stops the parse.
+ */
+abstract class YamlScanner {
+	private final YamlParserImpl parser;
+	private final Text text = new Text();
+
+	// Opening brackets of the enclosing flow collections, and level of the entry holding the outermost one
+	private int[] flow = new int[8];
+	private int depth = 0;
+	private int flowBase;
+
+	YamlScanner(YamlParserImpl parser) {
+		this.parser = parser;
+	}
+
+	/**
+	 * @return the character at the index, or the byte as an unsigned value. Structural characters are all ASCII.
+	 */
+	abstract int at(int index);
+
+	/**
+	 * @return the characters of [start, end[, as a view valid until the next call.
+	 */
+	abstract CharSequence text(int start, int end);
+
+	/**
+	 * Handles the entries of [position, limit[.
+	 *
+	 * @return the position following the last consumed character.
+	 */
+	int scan(int position, int limit, boolean endOfInput) throws ParsingException {
+		while (position < limit && !parser.isStopped()) {
+			int next = step(position, limit, endOfInput);
+			if (next == -1) {
+				break;
+			}
+			position = next;
+		}
+		return Math.min(position, limit);
+	}
+
+	/**
+	 * Handles the entry at the position, which is before the limit.
+	 *
+	 * @return the position following the consumed characters, up to limit + 1, -1 if the entry is incomplete.
+	 */
+	int step(int position, int limit, boolean endOfInput) throws ParsingException {
+		return (depth == 0)? block(position, limit, endOfInput): flow(position, limit, endOfInput);
+	}
+
+	/**
+	 * @return true unless the scan is inside a flow collection.
+	 */
+	boolean isBlock() {
+		return depth == 0;
+	}
+
+	/**
+	 * Handles a block line, or its beginning up to the flow collection it holds as value.
+	 *
+	 * @return the position following the consumed characters, -1 if the line is incomplete.
+	 */
+	private int block(int position, int limit, boolean endOfInput) throws ParsingException {
+		int end = lineEnd(position, limit);
+		if (end == limit && !endOfInput) { return -1; }
+		if (isBlankOrComment(position, end)) { return end + 1; }
+		int opening = flowOpening(position, end);
+		if (opening == -1) {
+			parser.parse(text(position, end));
+			return end + 1;
+		}
+		parser.parse(text(position, opening));
+		flowBase = parser.currentLevel;
+		push(at(opening));
+		return opening + 1;
+	}
+
+	/**
+	 * Handles a blank, a comment, a bracket or an item of the current flow collection.
+	 *
+	 * @return the position following the consumed characters, -1 if the item is incomplete.
+	 */
+	private int flow(int position, int limit, boolean endOfInput) throws ParsingException {
+		int c = at(position);
+		if (c <= ' ' || c == ',') { return position + 1; }
+		if (c == '#') {
+			int end = lineEnd(position, limit);
+			return (end == limit && !endOfInput)? -1: end;
+		}
+		int top = flow[depth - 1];
+		switch (c) {
+		case ']':
+		case '}':
+			if (c != closing(top)) { throw new ParsingException("Unexpected '" + (char) c + "' in a flow collection", text(position, lineEnd(position, limit)).toString(), 0); }
+			depth--;
+			return position + 1;
+		case '[':
+		case '{':
+			if (top == '{') { throw new ParsingException("Flow mapping key expected", text(position, lineEnd(position, limit)).toString(), 0); }
+			parser.flowItem(text(position, position), flowBase + depth, true);
+			push(c);
+			return position + 1;
+		default:
+			break;
+		}
+		int end = itemEnd(position, limit, top);
+		if (end == -1) {
+			if (!endOfInput) { return -1; }
+			end = limit;
+		}
+		parser.flowItem(text(position, end), flowBase + depth, top == '[');
+		if (end == limit) { return end; }
+		switch (at(end)) {
+		case ',':
+			return end + 1;
+		case '[':
+		case '{':
+			push(at(end));
+			return end + 1;
+		default:
+			return end;
+		}
+	}
+
+	/**
+	 * @return the index of the '{' or '[' opening a flow collection as the value of the line [start, end[, -1 if none.
+	 */
+	private int flowOpening(int start, int end) {
+		int index = skipBlanks(start, end);
+		if (index + 1 < end && at(index) == '-' && isBlank(at(index + 1))) {
+			index = skipBlanks(index + 1, end);
+		}
+		if (index < end && isOpening(at(index))) { return index; }
+		for (; index < end; index++) {
+			int c = at(index);
+			if (c == '#' && (index == start || isBlank(at(index - 1)))) { return -1; }
+			if (c == ':') {
+				index = skipBlanks(index + 1, end);
+				return (index < end && isOpening(at(index)))? index: -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the index of the separator, closing bracket, comment or nested collection ending the item which starts at the
+	 *         position, -1 if there is none before the limit. Quoted values may hold any of them.
+	 */
+	private int itemEnd(int position, int limit, int top) {
+		int quote = 0;
+		boolean valueStart = true, mappingValue = false;
+		for (int index = position; index < limit; index++) {
+			int c = at(index);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+				continue;
+			}
+			if (c <= ' ') {
+				continue;
+			}
+			switch (c) {
+			case ',':
+			case ']':
+			case '}':
+				return index;
+			case '#':
+				if (at(index - 1) <= ' ') { return index; }
+				break;
+			case '"':
+			case '\'':
+				if (valueStart) {
+					quote = c;
+				}
+				break;
+			case '[':
+			case '{':
+				if (valueStart && mappingValue) { return index; }
+				break;
+			case ':':
+				if (top == '{' && !mappingValue) {
+					mappingValue = valueStart = true;
+					continue;
+				}
+				break;
+			default:
+				break;
+			}
+			valueStart = false;
+		}
+		return -1;
+	}
+
+	private void push(int opening) {
+		if (depth == flow.length) {
+			flow = Arrays.copyOf(flow, depth << 1);
+		}
+		flow[depth++] = opening;
+	}
+
+	private static boolean isOpening(int c) {
+		return c == '[' || c == '{';
+	}
+
+	private static int closing(int opening) {
+		return (opening == '[')? ']': '}';
+	}
+
+	private static boolean isBlank(int c) {
+		return c == ' ' || c == '\t';
+	}
+
+	private int lineEnd(int position, int limit) {
+		while (position < limit && at(position) != '\n') {
+			position++;
+		}
+		return position;
+	}
+
+	private int skipBlanks(int position, int end) {
+		while (position < end && isBlank(at(position))) {
+			position++;
+		}
+		return position;
+	}
+
+	/** @return true if [start, end[ would be ignored by {@link YamlParserImpl#parse(CharSequence)}, as blank or comment. */
+	private boolean isBlankOrComment(int start, int end) {
+		for (int index = start; index < end; index++) {
+			int c = at(index);
+			if (c > ' ') { return c == '#'; }
+		}
+		return true;
+	}
+
+	/**
+	 * Reused view over a range of characters.
+	 */
+	static class Text implements CharSequence {
+		private char[] chars;
+		private int offset;
+		private int length;
+
+		Text set(char[] chars, int offset, int length) {
+			this.chars = chars;
+			this.offset = offset;
+			this.length = length;
+			return this;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= length) { throw new IndexOutOfBoundsException(Integer.toString(index)); }
+			return chars[offset + index];
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			if (start < 0 || end > length || start > end) { throw new IndexOutOfBoundsException(start + ", " + end); }
+			return new String(chars, offset + start, end - start);
+		}
+
+		@Override
+		public String toString() {
+			return new String(chars, offset, length);
+		}
+
+		/**
+		 * Fires the leaf whose value is the range [start, end[ of the text, as the characters it views.
+		 */
+		void fireLeaf(EventDispatcher dispatcher, MarkupNode nodeType, int start, int end, String parent) {
+			dispatcher.fireLeaf(nodeType, chars, offset + start, offset + end, parent);
+		}
+	}
+
+	/**
+	 * Scanner of a heap character buffer, the entries being views over it.
+	 */
+	static class Chars extends YamlScanner {
+		private CharBuffer buffer;
+
+		Chars(YamlParserImpl parser) {
+			super(parser);
+		}
+
+		/**
+		 * Handles the entries of the buffer from its position, which is left after the last consumed character.
+		 */
+		void scan(CharBuffer buffer, boolean endOfInput) throws ParsingException {
+			this.buffer = buffer;
+			buffer.position(scan(buffer.position(), buffer.limit(), endOfInput));
+		}
+
+		/**
+		 * Handles the entry at the buffer position, which is left after it.
+		 *
+		 * @return false if there is no complete entry.
+		 */
+		boolean step(CharBuffer buffer, boolean endOfInput) throws ParsingException {
+			if (!buffer.hasRemaining()) { return false; }
+			this.buffer = buffer;
+			int next = step(buffer.position(), buffer.limit(), endOfInput);
+			if (next == -1) { return false; }
+			buffer.position(Math.min(next, buffer.limit()));
+			return true;
+		}
+
+		@Override
+		int at(int index) {
+			return buffer.get(index);
+		}
+
+		@Override
+		CharSequence text(int start, int end) {
+			return super.text.set(buffer.array(), buffer.arrayOffset() + start, end - start);
+		}
+	}
+
+	/**
+	 * Scanner of UTF-8 bytes. A multi-bytes sequence never contains an ASCII byte, so the structure is scanned on the bytes and
+	 * blank or comment lines are skipped without being decoded. Entries are decoded into a reused buffer, through a plain copy
+	 * when they are ASCII.
+	 */
+	static class Bytes extends YamlScanner {
+		private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		private char[] chars = new char[256];
+		private ByteBuffer buffer;
+
+		Bytes(YamlParserImpl parser) {
+			super(parser);
+		}
+
+		/**
+		 * Handles the entries of the buffer from its position, which is left after the last consumed byte.
+		 */
+		void scan(ByteBuffer buffer, boolean endOfInput) throws ParsingException {
+			this.buffer = buffer;
+			buffer.position(scan(buffer.position(), buffer.limit(), endOfInput));
+		}
+
+		/**
+		 * Handles the entry at the buffer position, which is left after it. The buffer limit is the end of input.
+		 */
+		void step(ByteBuffer buffer) throws ParsingException {
+			this.buffer = buffer;
+			buffer.position(Math.min(step(buffer.position(), buffer.limit(), true), buffer.limit()));
+		}
+
+		@Override
+		int at(int index) {
+			return buffer.get(index) & 0xFF;
+		}
+
+		@Override
+		CharSequence text(int start, int end) {
+			// UTF-8 never decodes to more characters than bytes
+			if (chars.length < end - start) {
+				chars = new char[Math.max(chars.length << 1, end - start)];
+			}
+			int length = 0, index = start;
+			for (; index < end; index++) {
+				byte b = buffer.get(index);
+				if (b < 0) {
+					break;
+				}
+				chars[length++] = (char) b;
+			}
+			if (index < end) {
+				ByteBuffer bytes = buffer.duplicate();
+				bytes.limit(end).position(index);
+				CharBuffer decoded = CharBuffer.wrap(chars, length, chars.length - length);
+				decoder.reset();
+				decoder.decode(bytes, decoded, true);
+				decoder.flush(decoded);
+				length = decoded.position();
+			}
+			return super.text.set(chars, 0, length);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package net.aeten.core.parsing.yaml;
+
+/**
+ * Hand-written scanner of the YAML type, reference and anchor tokens ({@code !tag}, {@code &anchor}, {@code *alias}) followed
+ * by an optional value and a trailing comment. It matches exactly what
+ * {@code [!&*](\p{Graph}+)(\p{Blank})*([^#]*)(.*)} would, without a {@link java.util.regex.Matcher}: on success, the name
+ * (group 1) is [start + 1, nameEnd[, the value (group 3) is [valueStart, valueEnd[ and the comment (group 4) is
+ * [valueEnd, end[.
+ */
+final class YamlToken {
+	int nameEnd;
+	int valueStart;
+	int valueEnd;
+
+	/**
+	 * @return true if [start, end[ of the line is a token, in which case the bounds of its parts are set.
+	 */
+	boolean scan(CharSequence line, int start, int end) {
+		if (start >= end) { return false; }
+		switch (line.charAt(start)) {
+		case '!':
+		case '&':
+		case '*':
+			break;
+		default:
+			return false;
+		}
+		int index = start + 1;
+		while (index < end && isGraph(line.charAt(index))) {
+			index++;
+		}
+		if (index == start + 1) { return false; }
+		nameEnd = index;
+		while (index < end && isBlank(line.charAt(index))) {
+			index++;
+		}
+		valueStart = index;
+		while (index < end && line.charAt(index) != '#') {
+			index++;
+		}
+		valueEnd = index;
+		// The comment is matched by '.', which does not match line terminators; no backtracking can help then
+		for (; index < end; index++) {
+			if (isLineTerminator(line.charAt(index))) { return false; }
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the line matches {@code ^\s.*}.
+	 */
+	static boolean isIndented(CharSequence line) {
+		if (line.length() == 0 || !isWhitespace(line.charAt(0))) { return false; }
+		for (int i = 1; i < line.length(); i++) {
+			if (isLineTerminator(line.charAt(i))) { return false; }
+		}
+		return true;
+	}
+
+	/**
+	 * @return the end of the leading {@code \s+} of [start, end[, start if none.
+	 */
+	static int indentationEnd(CharSequence line, int start, int end) {
+		while (start < end && isWhitespace(line.charAt(start))) {
+			start++;
+		}
+		return start;
+	}
+
+	/** {@code \p{Graph}}: printable ASCII, space excluded. */
+	static boolean isGraph(char c) {
+		return c > ' ' && c < 0x7F;
+	}
+
+	/** {@code \p{Blank}} */
+	static boolean isBlank(char c) {
+		return c == ' ' || c == '\t';
+	}
+
+	/** {@code \s} */
+	static boolean isWhitespace(char c) {
+		switch (c) {
+		case ' ':
+		case '\t':
+		case '\n':
+		case 0x0B:
+		case '\f':
+		case '\r':
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/** Characters not matched by {@code .} */
+	static boolean isLineTerminator(char c) {
+		switch (c) {
+		case '\n':
+		case '\r':
+		case '\u0085':
+		case '\u2028':
+		case '\u2029':
+			return true;
+		default:
+			return false;
+		}
+	}
+}
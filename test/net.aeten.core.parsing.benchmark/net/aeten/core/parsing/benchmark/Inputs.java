@@ -0,0 +1,158 @@
+package net.aeten.core.parsing.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import net.aeten.core.parsing.properties.PropertiesParser;
+import net.aeten.core.parsing.support.PullParser;
+import net.aeten.core.parsing.xml.XmlParser;
+import net.aeten.core.parsing.yaml.YamlParser;
+
+/**
+ * Generated benchmark inputs. Files are written once in the temporary directory and reused by the following runs.
+ */
+final class Inputs {
+	private static final Path DIRECTORY = Paths.get(System.getProperty("java.io.tmpdir"), "aeten-parsing-benchmark");
+
+	private Inputs() {}
+
+	static long size(String size) {
+		String unit = size.substring(size.length() - 2);
+		long value = Long.parseLong(size.substring(0, size.length() - 2));
+		switch (unit) {
+		case "KB":
+			return value << 10;
+		case "MB":
+			return value << 20;
+		case "GB":
+			return value << 30;
+		default:
+			throw new IllegalArgumentException("Unknown size unit " + unit);
+		}
+	}
+
+	static PullParser parser(String format) {
+		switch (format) {
+		case "yaml":
+			return new YamlParser();
+		case "xml":
+			return new XmlParser();
+		case "properties":
+			return new PropertiesParser();
+		default:
+			throw new IllegalArgumentException("Unknown format " + format);
+		}
+	}
+
+	static Path generate(String format, String size) throws IOException {
+		Path file = DIRECTORY.resolve(size + "." + format);
+		if (Files.exists(file)) { return file; }
+		Files.createDirectories(DIRECTORY);
+		Path temporary = Files.createTempFile(DIRECTORY, size, "." + format);
+		long length = size(size);
+		try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+			switch (format) {
+			case "yaml":
+				yaml(new Output(writer), length);
+				break;
+			case "flow.yaml":
+				flowYaml(new Output(writer), length);
+				break;
+			case "xml":
+				xml(new Output(writer), length);
+				break;
+			case "properties":
+				properties(new Output(writer), length);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown format " + format);
+			}
+		}
+		return Files.move(temporary, file);
+	}
+
+	private static void yaml(Output output, long length) throws IOException {
+		output.line("--- !type.document");
+		for (int record = 0; output.written < length; record++) {
+			output.line("record " + record + ":");
+			output.line("  tag: value " + record);
+			output.line("  list:");
+			output.line("    - !type.list.value # value 1");
+			output.line("      list value 1 tag 1: value 1 tag 1 value");
+			output.line("      list value 1 tag 2: value 1 tag 2 value");
+			output.line("    - value 2");
+			output.line("  map: !type.map");
+			output.line("    map value 1 tag 1: value 1 tag 1 value");
+			output.line("    map value 1 tag 2: value 1 tag 2 value");
+			output.line("  boolean: TRUE");
+			output.line("  inline_seq: [foo " + record + ", bar " + record + "]");
+		}
+	}
+
+	/** A single flow sequence of flow mappings, on one line. */
+	private static void flowYaml(Output output, long length) throws IOException {
+		output.line("--- !type.document");
+		output.append("records: [");
+		for (int record = 0; output.written < length; record++) {
+			output.append((record == 0)? "{": ", {");
+			output.append("tag: value " + record + ", boolean: TRUE, inline_seq: [foo " + record + ", bar " + record + "]}");
+		}
+		output.line("]");
+	}
+
+	private static void xml(Output output, long length) throws IOException {
+		output.line("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+		output.line("<document type=\"type.document\">");
+		for (int record = 0; output.written < length; record++) {
+			output.line("  <record id=\"" + record + "\" type=\"type.record\">");
+			output.line("    <tag>value " + record + "</tag>");
+			output.line("    <list>");
+			output.line("      <value tag1=\"value 1 tag 1 value\" tag2=\"value 1 tag 2 value\"/>");
+			output.line("      <value>value 2</value>");
+			output.line("    </list>");
+			output.line("    <map><tag1>value 1 tag 1 value</tag1><tag2>value 1 tag 2 value</tag2></map>");
+			output.line("    <boolean>TRUE</boolean>");
+			output.line("  </record>");
+		}
+		output.line("</document>");
+	}
+
+	private static void properties(Output output, long length) throws IOException {
+		for (int record = 0; output.written < length; record++) {
+			String prefix = "record" + record + ".";
+			output.line(prefix + "tag=value " + record);
+			output.line(prefix + "list.0.tag1=value 1 tag 1 value");
+			output.line(prefix + "list.0.tag2=value 1 tag 2 value");
+			output.line(prefix + "list.1=value 2");
+			output.line(prefix + "map.tag1=value 1 tag 1 value");
+			output.line(prefix + "map.tag2=value 1 tag 2 value");
+			output.line(prefix + "boolean=TRUE");
+		}
+	}
+
+	/** Generated lines are pure ASCII, so the written character count is also the byte count. */
+	private static class Output {
+		private final Writer writer;
+		long written = 0;
+
+		Output(Writer writer) {
+			this.writer = (writer instanceof BufferedWriter)? writer: new BufferedWriter(writer);
+		}
+
+		void line(String line) throws IOException {
+			append(line);
+			writer.write('\n');
+			written++;
+		}
+
+		void append(String text) throws IOException {
+			writer.write(text);
+			written += text.length();
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package net.aeten.core.parsing.benchmark;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.Document;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingEvent;
+import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.support.ParsingCursor;
+import net.aeten.core.parsing.support.PullParser;
+import net.aeten.core.parsing.support.ReusedDataHandler;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of the parsers on generated inputs. The score is in parse/s, the {@link Bytes#bytes} counter in bytes/s and
+ * the allocation rate is reported by the GC profiler (enabled by {@link #main(String[])}).
+ *
+ * The heap is bounded to 8 GB without being reserved, for the trees of the largest inputs. On a smaller machine, the large
+ * sizes are left out with "-p size=1KB,64KB,1MB" and the bound lowered with "-jvmArgsAppend -Xmx2g".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ParsingBenchmark {
+	static final Handler<ParsingData<MarkupNode>> NULL_HANDLER = new Handler<ParsingData<MarkupNode>>() {
+		@Override
+		public void handleEvent(ParsingData<MarkupNode> data) {}
+	};
+
+	@Param({ "yaml", "xml", "properties" })
+	String format;
+
+	@Param({ "1KB", "64KB", "1MB", "32MB", "500MB" })
+	String size;
+
+	PullParser parser;
+	Path input;
+	long length;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Bytes {
+		public long bytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			bytes = 0;
+		}
+	}
+
+	static class CountingHandler implements Handler<ParsingData<MarkupNode>> {
+		final Blackhole blackhole;
+		long count = 0;
+
+		CountingHandler(Blackhole blackhole) {
+			this.blackhole = blackhole;
+		}
+
+		@Override
+		public void handleEvent(ParsingData<MarkupNode> data) {
+			count++;
+			blackhole.consume(data.getNodeType());
+			blackhole.consume(data.getValue());
+		}
+	}
+
+	static class ReusedCountingHandler extends CountingHandler implements ReusedDataHandler {
+		ReusedCountingHandler(Blackhole blackhole) {
+			super(blackhole);
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		parser = Inputs.parser(format);
+		input = Inputs.generate(format, size);
+		length = Files.size(input);
+	}
+
+	@Benchmark
+	public void nullHandler(Bytes bytes) throws IOException, ParsingException {
+		try (Reader reader = reader()) {
+			parser.parse(reader, NULL_HANDLER);
+		}
+		bytes.bytes += length;
+	}
+
+	@Benchmark
+	public long countingHandler(Bytes bytes, Blackhole blackhole) throws IOException, ParsingException {
+		CountingHandler handler = new CountingHandler(blackhole);
+		try (Reader reader = reader()) {
+			parser.parse(reader, handler);
+		}
+		bytes.bytes += length;
+		return handler.count;
+	}
+
+	@Benchmark
+	public long reusedDataHandler(Bytes bytes, Blackhole blackhole) throws IOException, ParsingException {
+		CountingHandler handler = new ReusedCountingHandler(blackhole);
+		try (Reader reader = reader()) {
+			parser.parse(reader, handler);
+		}
+		bytes.bytes += length;
+		return handler.count;
+	}
+
+	@Benchmark
+	public Document<Document.Node> loadNodes(Bytes bytes) throws IOException, ParsingException {
+		try (Reader reader = reader()) {
+			Document<Document.Node> document = Document.loadNodes(reader, parser);
+			bytes.bytes += length;
+			return document;
+		}
+	}
+
+	@Benchmark
+	public Document<Document.Element> loadElements(Bytes bytes) throws IOException, ParsingException {
+		try (Reader reader = reader()) {
+			Document<Document.Element> document = Document.loadElements(reader, parser);
+			bytes.bytes += length;
+			return document;
+		}
+	}
+
+	@Benchmark
+	public long cursor(Bytes bytes, Blackhole blackhole) throws IOException, ParsingException {
+		long count = 0;
+		try (Reader reader = reader(); ParsingCursor cursor = parser.open(reader)) {
+			for (ParsingData<MarkupNode> data; (data = cursor.next()) != null; count++) {
+				blackhole.consume(data.getNodeType());
+				blackhole.consume(data.getValue());
+			}
+		}
+		bytes.bytes += length;
+		return count;
+	}
+
+	/**
+	 * Pulls up to the first text: the case of a consumer looking for a field at the beginning of a large document.
+	 */
+	@Benchmark
+	public String cursorFirstText() throws IOException, ParsingException {
+		try (Reader reader = reader(); ParsingCursor cursor = parser.open(reader)) {
+			for (ParsingData<MarkupNode> data; (data = cursor.next()) != null;) {
+				if (data.getEvent() == ParsingEvent.START_NODE && data.getNodeType() == MarkupNode.TEXT) { return data.getValue(); }
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Pulls the top of the document, skipping the children of the nodes at depth 2.
+	 */
+	@Benchmark
+	public long cursorSkipChildren(Bytes bytes) throws IOException, ParsingException {
+		long count = 0;
+		try (Reader reader = reader(); ParsingCursor cursor = parser.open(reader)) {
+			for (ParsingData<MarkupNode> data; (data = cursor.next()) != null; count++) {
+				if (data.getEvent() == ParsingEvent.START_NODE && cursor.currentDepth() == 2) {
+					cursor.skipChildren();
+				}
+			}
+		}
+		bytes.bytes += length;
+		return count;
+	}
+
+	Reader reader() throws IOException {
+		return Files.newBufferedReader(input, StandardCharsets.UTF_8);
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().parent(new CommandLineOptions(args)).include(ParsingBenchmark.class.getPackage().getName()).addProfiler(GCProfiler.class).build()).run();
+	}
+}
@@ -0,0 +1,66 @@
+package net.aeten.core.parsing.benchmark;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.benchmark.ParsingBenchmark.Bytes;
+import net.aeten.core.parsing.yaml.YamlParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link YamlParser} entry points compared on the same generated input, in block style or as one long flow collection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class YamlBenchmark {
+	@Param({ "1KB", "1MB", "32MB", "500MB" })
+	String size;
+
+	@Param({ "yaml", "flow.yaml" })
+	String format;
+
+	final YamlParser parser = new YamlParser();
+	Path input;
+	long length;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		input = Inputs.generate(format, size);
+		length = Files.size(input);
+	}
+
+	@Benchmark
+	public void reader(Bytes bytes) throws IOException, ParsingException {
+		try (Reader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+			parser.parse(reader, ParsingBenchmark.NULL_HANDLER);
+		}
+		bytes.bytes += length;
+	}
+
+	@Benchmark
+	public void mappedFile(Bytes bytes) throws ParsingException {
+		parser.parse(input, ParsingBenchmark.NULL_HANDLER);
+		bytes.bytes += length;
+	}
+}
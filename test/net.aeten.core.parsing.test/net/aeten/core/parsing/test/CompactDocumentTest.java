@@ -0,0 +1,80 @@
+package net.aeten.core.parsing.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingEvent;
+import net.aeten.core.parsing.properties.PropertiesParser;
+import net.aeten.core.parsing.support.CompactDocument;
+import net.aeten.core.parsing.xml.XmlParser;
+import net.aeten.core.parsing.yaml.YamlParser;
+
+/**
+ * Checks that the events walked back from a {@link CompactDocument} are those of the parse it was loaded from.
+ */
+public class CompactDocumentTest {
+
+	public static void main(String[] args) throws Exception {
+		check(new YamlParser(), Fixtures.yaml());
+		check(new XmlParser(), Fixtures.XML);
+		check(new PropertiesParser(), Fixtures.PROPERTIES_SYNTAX);
+
+		// Beyond the initial capacities: nodes, characters, type names and open nodes
+		StringBuilder yaml = new StringBuilder(), xml = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			yaml.append("key ").append(i).append(": !type.").append(i).append(" value ").append(i).append(" été\n");
+		}
+		for (int i = 0; i < 100; i++) {
+			xml.append("<e").append((i % 2 == 0)? " a=\"\"": "").append('>');
+		}
+		xml.append("text");
+		for (int i = 0; i < 100; i++) {
+			xml.append("</e>");
+		}
+		check(new YamlParser(), yaml.toString());
+		check(new XmlParser(), xml.toString());
+
+		CompactDocument document = CompactDocument.load(Fixtures.reader("a:\n  - x\n  - y\n"), new YamlParser());
+		CompactDocument.Node map = document.getRoot().getChildren().get(0).getChildren().get(0);
+		CompactDocument.MappingEntry entry = map.getChildren().get(0).asMappingEntry();
+		List<String> items = new ArrayList<>();
+		for (CompactDocument.Node item : entry.getValue().asSequence()) {
+			items.add(item.getValue());
+		}
+		if (!"a".equals(entry.getKey()) || !items.toString().equals("[x, y]") || !"java.util.List".equals(entry.getValue().getType())) { throw new AssertionError(entry.getKey() + " " + items); }
+	}
+
+	private static void check(Parser<MarkupNode> parser, String input) throws Exception {
+		final List<String> expected = new ArrayList<>();
+		parser.parse(Fixtures.reader(input), new Handler<ParsingData<MarkupNode>>() {
+			@Override
+			public void handleEvent(ParsingData<MarkupNode> data) {
+				// The values of ends are those of their starts, or may be left out
+				expected.add(data.getEvent() + " " + data.getNodeType() + ((data.getEvent() == ParsingEvent.START_NODE)? " " + data.getValue(): ""));
+			}
+		});
+		CompactDocument document = CompactDocument.load(Fixtures.reader(input), parser);
+		List<String> actual = new ArrayList<>();
+		for (CompactDocument.Node child : document.getRoot().getChildren()) {
+			walk(child, actual);
+		}
+		Fixtures.compare(expected, actual);
+		System.out.println(parser.getClass().getSimpleName() + ": " + document.size() + " nodes, same events");
+	}
+
+	private static void walk(CompactDocument.Node node, List<String> events) {
+		if (node.getType() != null) {
+			events.add("START_NODE TYPE " + node.getType());
+			events.add("END_NODE TYPE");
+		}
+		events.add("START_NODE " + node.getNodeType() + " " + node.getValue());
+		for (CompactDocument.Node child : node.getChildren()) {
+			walk(child, events);
+		}
+		events.add("END_NODE " + node.getNodeType());
+	}
+}
@@ -0,0 +1,65 @@
+package net.aeten.core.parsing.test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.properties.PropertiesParser;
+import net.aeten.core.parsing.properties.PropertiesParser.Order;
+import net.aeten.core.parsing.support.ControlledHandler;
+import net.aeten.core.parsing.xml.StaxXmlParser;
+import net.aeten.core.parsing.xml.XmlParser;
+import net.aeten.core.parsing.yaml.YamlParser;
+
+/**
+ * Checks that skipping the subtree of any event, or stopping at it, drops exactly the expected events with every parser.
+ */
+public class ControlledHandlerTest {
+	/** Subtrees ending on dedents of several levels, typed, anchored and referenced values, and a skip of the last node. */
+	private static final String NESTED_YAML = "a:\n  b:\n    c:\n      - d\n      - !int 1\n    e: f\n  g:\n    -\n      h: i\n      j: k\nl: &x m\nn: *x\n";
+	/** Nested elements of the same name, whose ends SAX reads while skipping, and attributes, CDATA and text after them. */
+	private static final String NESTED_XML = "<a><a x=\"1\"><a>t</a><![CDATA[c]]></a><b/><a y=\"2\"/>tail</a>";
+	/** A prefix found again after another one, fired as a second tag of its name which a skip of the first must keep. */
+	private static final String GROUPED_PROPERTIES = "a.x=1\na.y.z=2\nb=3\na.w=4\na.w=5\n";
+	/** Indexed items, sorted by their index value. */
+	private static final String LIST_PROPERTIES = "list.10.x=3\nlist.0.x=1\nlist.0.y=2\nlist.1.x=4\nother=5\n";
+
+	public static void main(String[] args) throws Exception {
+		check(new YamlParser(), Fixtures.yaml());
+		check(new YamlParser(), Fixtures.FLOW_YAML);
+		check(new YamlParser(), NESTED_YAML);
+		check(new XmlParser(), Fixtures.XML);
+		check(new XmlParser(), NESTED_XML);
+		check(new StaxXmlParser(), Fixtures.XML);
+		check(new StaxXmlParser(), NESTED_XML);
+		check(new PropertiesParser(), Fixtures.PROPERTIES);
+		check(new PropertiesParser(), LIST_PROPERTIES);
+		check(new PropertiesParser(Order.GROUPED), GROUPED_PROPERTIES);
+	}
+
+	private static void check(Parser<MarkupNode> parser, String input) throws Exception {
+		List<String> expected = new ArrayList<>();
+		parser.parse(Fixtures.reader(input), Fixtures.recorder(expected));
+		for (int index = 0; index < expected.size(); index++) {
+			for (boolean reused : new boolean[] { false, true }) {
+				Fixtures.compare(Fixtures.withoutChildren(expected, index), parse(parser, input, index, ControlledHandler.Signal.SKIP_SUBTREE, reused));
+				Fixtures.compare(expected.subList(0, index + 1), parse(parser, input, index, ControlledHandler.Signal.STOP, reused));
+			}
+			if (parser instanceof YamlParser) {
+				List<String> events = new ArrayList<>();
+				((YamlParser) parser).parse(ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8)), Fixtures.recorder(events, index, ControlledHandler.Signal.SKIP_SUBTREE, false));
+				Fixtures.compare(Fixtures.withoutChildren(expected, index), events);
+			}
+		}
+		System.out.println(parser.getClass().getSimpleName() + ": " + expected.size() + " events skipped and stopped at");
+	}
+
+	private static List<String> parse(Parser<MarkupNode> parser, String input, int index, ControlledHandler.Signal signal, boolean reused) throws Exception {
+		List<String> events = new ArrayList<>();
+		parser.parse(Fixtures.reader(input), Fixtures.recorder(events, index, signal, reused));
+		return events;
+	}
+}
@@ -0,0 +1,101 @@
+package net.aeten.core.parsing.test;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.EnumSet;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.Document;
+import net.aeten.core.parsing.properties.PropertiesParser;
+import net.aeten.core.parsing.support.DocumentCache;
+import net.aeten.core.parsing.support.MeteredParser;
+import net.aeten.core.parsing.support.ParsingMetrics;
+import net.aeten.core.parsing.xml.XmlParser;
+import net.aeten.core.parsing.yaml.YamlParser;
+
+/**
+ * Checks that a {@link DocumentCache} serves unchanged files, reloads changed ones and evicts the least recently used.
+ */
+public class DocumentCacheTest {
+	private static final String UNSORTED_PROPERTIES = "a.x=1\nb.y=2\na.z=3\n";
+	private static final String XML = "<?xml version=\"1.0\"?>\n<document><a>1</a></document>";
+	private static final Handler<ParsingMetrics> IGNORED = new Handler<ParsingMetrics>() {
+		@Override
+		public void handleEvent(ParsingMetrics metrics) {}
+	};
+
+	public static void main(String[] args) throws Exception {
+		Path directory = Files.createTempDirectory("documents");
+		Path first = directory.resolve("first.yaml"), second = directory.resolve("second.yaml");
+		Path properties = directory.resolve("unsorted.properties"), xml = directory.resolve("document.xml");
+		try {
+			Files.write(first, "a: 1\nb: 2\n".getBytes(StandardCharsets.UTF_8));
+			Files.write(second, "c: 3\n".getBytes(StandardCharsets.UTF_8));
+			// Room for the two files, 10 and 5 bytes
+			DocumentCache cache = new DocumentCache(15 * DocumentCache.RETAINED_BYTES_PER_FILE_BYTE);
+			YamlParser parser = new YamlParser();
+
+			Document<Document.Node> document = cache.loadNodes(first, parser);
+			check(cache.loadNodes(first, parser) == document, "unchanged file reloaded");
+			check(cache.loadNodes(directory.resolve("../" + directory.getFileName() + "/first.yaml"), parser) == document, "path not normalized");
+			cache.loadNodes(second, parser);
+			check(cache.getHits() == 2 && cache.getMisses() == 2 && cache.size() == 2, "hits or misses " + cache.getHits() + ", " + cache.getMisses());
+
+			Files.write(first, "a: 1\nb: 3\n".getBytes(StandardCharsets.UTF_8));
+			Files.setLastModifiedTime(first, FileTime.fromMillis(Files.getLastModifiedTime(first).toMillis() + 1000));
+			check(cache.loadNodes(first, parser) != document, "changed file served from the cache");
+			check(cache.getMisses() == 3 && cache.getEvictions() == 0, "changed file evicted");
+
+			Files.write(second, "c: 3\nd: 4\n".getBytes(StandardCharsets.UTF_8));
+			cache.loadNodes(second, parser);
+			check(cache.getEvictions() == 1 && cache.size() == 1 && cache.getRetainedBytes() == 10 * DocumentCache.RETAINED_BYTES_PER_FILE_BYTE, "least recently used not evicted");
+			cache.loadNodes(second, parser);
+			check(cache.getHits() == 3, "last file not cached");
+			System.out.println(cache.getHits() + " hits, " + cache.getMisses() + " misses, " + cache.getEvictions() + " eviction");
+
+			// The same file through parsers of the same class, configured differently
+			Files.write(properties, UNSORTED_PROPERTIES.getBytes(StandardCharsets.UTF_8));
+			cache = new DocumentCache(Long.MAX_VALUE);
+			PropertiesParser sorting = new PropertiesParser(), grouped = new PropertiesParser(PropertiesParser.Order.GROUPED);
+			Document<Document.Node> sorted = cache.loadNodes(properties, sorting);
+			document = cache.loadNodes(properties, grouped);
+			check(document != sorted && cache.getMisses() == 2, "document of another parser configuration served from the cache");
+			check(Fixtures.print(document.root).equals(Fixtures.print(Document.loadNodes(new StringReader(UNSORTED_PROPERTIES), grouped).root)), "grouped document not loaded by its parser");
+			check(!Fixtures.print(document.root).equals(Fixtures.print(sorted.root)), "grouped and sorted documents alike");
+			check(cache.loadNodes(properties, sorting) == sorted && cache.loadNodes(properties, grouped) == document && cache.getHits() == 2, "documents of each parser not cached");
+
+			Files.write(xml, XML.getBytes(StandardCharsets.UTF_8));
+			XmlParser plain = new XmlParser(), secured = new XmlParser(EnumSet.of(XmlParser.Feature.DISABLE_EXTERNAL_DTD, XmlParser.Feature.DISABLE_EXTERNAL_ENTITIES));
+			check(cache.loadNodes(xml, plain) != cache.loadNodes(xml, secured) && cache.getMisses() == 4, "document of other XML features served from the cache");
+			check(cache.loadNodes(xml, secured) == cache.loadNodes(xml, secured), "documents of a parser instance not shared");
+
+			// Reloads through fresh instances configured alike
+			long hits = cache.getHits();
+			int size = cache.size();
+			check(cache.loadNodes(properties, new PropertiesParser(PropertiesParser.Order.GROUPED)) == document, "document of a parser configured alike not shared");
+			check(cache.loadNodes(xml, new XmlParser(EnumSet.of(XmlParser.Feature.DISABLE_EXTERNAL_ENTITIES, XmlParser.Feature.DISABLE_EXTERNAL_DTD))) == cache.loadNodes(xml, secured), "document of XML features given in another order not shared");
+			Document<Document.Node> yaml = cache.loadNodes(first, new YamlParser());
+			check(cache.loadNodes(first, new YamlParser()) == yaml, "document of another YAML parser instance not shared");
+			check(cache.loadNodes(first, new MeteredParser(new YamlParser(), IGNORED)) == cache.loadNodes(first, new MeteredParser(new YamlParser(), IGNORED)), "document of another measured parser not shared");
+			check(cache.getHits() == hits + 5 && cache.size() == size + 2, "fresh instances added entries: " + cache.size());
+
+			// A changed file drops the documents of the other parsers
+			Files.write(properties, (UNSORTED_PROPERTIES + "c=4\n").getBytes(StandardCharsets.UTF_8));
+			check(cache.loadNodes(properties, new PropertiesParser()) != sorted && cache.size() == size + 1, "stale documents of the changed file kept: " + cache.size());
+			System.out.println("Documents cached by parser class and configuration");
+		} finally {
+			Files.deleteIfExists(first);
+			Files.deleteIfExists(second);
+			Files.deleteIfExists(properties);
+			Files.deleteIfExists(xml);
+			Files.delete(directory);
+		}
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) { throw new AssertionError(message); }
+	}
+}
@@ -0,0 +1,82 @@
+package net.aeten.core.parsing.test;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import net.aeten.core.parsing.Document;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.properties.PropertiesParser;
+import net.aeten.core.parsing.support.DocumentLoader;
+import net.aeten.core.parsing.xml.XmlParser;
+import net.aeten.core.parsing.yaml.YamlParser;
+
+/**
+ * Checks that files loaded concurrently give the documents loaded one after another, with the parser of their extension or
+ * of its alias, and that a repeated path is loaded once.
+ */
+public class DocumentLoaderTest {
+	private static final String XML = "<?xml version=\"1.0\"?>\n<document type=\"type.document\">\n <record id=\"%d\"><tag>value</tag><list><value>1</value><value>2</value></list></record>\n</document>";
+	private static final String PROPERTIES = "record.id=%d\nrecord.tag=value\nrecord.map.tag1=x\nother=z\n";
+
+	public static void main(String[] args) throws Exception {
+		String yaml = Fixtures.yaml();
+		Path directory = Files.createTempDirectory("documents");
+		List<Path> paths = new ArrayList<>();
+		List<String> expected = new ArrayList<>();
+		try {
+			for (int i = 0; i < 300; i++) {
+				add(paths, expected, directory.resolve(i + ((i % 2 == 0)? ".yaml": ".YML")), yaml.replace("tag: value", "tag: value " + i), new YamlParser());
+				add(paths, expected, directory.resolve(i + ".xml"), String.format(XML, i), new XmlParser());
+				add(paths, expected, directory.resolve(i + ".properties"), String.format(PROPERTIES, i), new PropertiesParser());
+			}
+			Path unknown = directory.resolve("unknown.txt");
+			Files.write(unknown, new byte[0]);
+
+			long nanoseconds = 0;
+			try (DocumentLoader loader = new DocumentLoader(4)) {
+				Map<Path, Future<DocumentLoader.Loaded<Document.Node>>> loading = loader.loadNodes(paths);
+				if (!new ArrayList<>(loading.keySet()).equals(paths)) { throw new AssertionError("Paths out of order"); }
+				int i = 0;
+				for (Future<DocumentLoader.Loaded<Document.Node>> future : loading.values()) {
+					DocumentLoader.Loaded<Document.Node> loaded = future.get();
+					if (!loaded.path.equals(paths.get(i))) { throw new AssertionError(loaded.path + " instead of " + paths.get(i)); }
+					Fixtures.compare(Collections.singletonList(expected.get(i++)), Collections.singletonList(Fixtures.print(loaded.document.root)));
+					nanoseconds += loaded.nanoseconds;
+				}
+				List<Path> repeated = Arrays.asList(paths.get(1), paths.get(0), paths.get(1));
+				loading = loader.loadNodes(repeated);
+				if (!new ArrayList<>(loading.keySet()).equals(repeated.subList(0, 2))) { throw new AssertionError("Repeated paths " + loading.keySet()); }
+				Fixtures.compare(Collections.singletonList(expected.get(1)), Collections.singletonList(Fixtures.print(loading.get(paths.get(1)).get().document.root)));
+				try {
+					loader.loadNodes(Collections.singletonList(unknown)).get(unknown).get();
+					throw new AssertionError("Loaded a file without parser");
+				} catch (ExecutionException exception) {
+					if (!(exception.getCause() instanceof ParsingException)) { throw exception; }
+				}
+			}
+			System.out.println(paths.size() + " files, same as loaded one by one, " + nanoseconds / 1000000 + " ms of parsing");
+		} finally {
+			for (Path path : Files.newDirectoryStream(directory)) {
+				Files.delete(path);
+			}
+			Files.delete(directory);
+		}
+	}
+
+	private static void add(List<Path> paths, List<String> expected, Path path, String content, Parser<MarkupNode> parser) throws Exception {
+		Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+		paths.add(path);
+		expected.add(Fixtures.print(Document.loadNodes(new StringReader(content), parser).root));
+	}
+}
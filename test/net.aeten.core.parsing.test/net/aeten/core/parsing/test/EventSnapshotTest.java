@@ -0,0 +1,74 @@
+package net.aeten.core.parsing.test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.properties.PropertiesParser;
+import net.aeten.core.parsing.support.EventSnapshot;
+import net.aeten.core.parsing.xml.XmlParser;
+import net.aeten.core.parsing.yaml.YamlParser;
+
+/**
+ * Checks that an {@link EventSnapshot} replays the events of the parse it was written from.
+ */
+public class EventSnapshotTest {
+	/** Values of one, two, three and four UTF-8 bytes by character, empty values and values without text. */
+	private static final String UNICODE_XML = "<?xml version=\"1.0\"?>\n<document><a>valeur \u00e9 \u65e5 \ud834\udd1e</a><b></b><c x=\"\"/><d>\u00e9t\u00e9</d></document>";
+
+	public static void main(String[] args) throws Exception {
+		check(new YamlParser(), Fixtures.yaml());
+		check(new XmlParser(), UNICODE_XML);
+		check(new PropertiesParser(), Fixtures.PROPERTIES_SYNTAX);
+
+		// Indexes of the string table and lengths of strings over one and two bytes of a variable-length number
+		StringBuilder properties = new StringBuilder(), value = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			properties.append("key.").append(i).append(" = value ").append(i).append('\n');
+		}
+		while (value.length() < 20000) {
+			value.append("long \u00e9 value ");
+		}
+		properties.append("long = ").append(value).append('\n');
+		check(new PropertiesParser(), properties.toString());
+
+		Path file = Files.createTempFile("snapshot", ".bin");
+		try {
+			EventSnapshot.Writer writer = new EventSnapshot.Writer();
+			new YamlParser().parse(Fixtures.reader("a: 1\n"), writer);
+			writer.write(file);
+			List<String> events = new ArrayList<>();
+			EventSnapshot.load(file).replay(new YamlParser(), Fixtures.recorder(events));
+			if (events.isEmpty()) { throw new AssertionError("No event replayed from the file"); }
+			Files.write(file, "not a snapshot".getBytes(StandardCharsets.UTF_8));
+			try {
+				EventSnapshot.load(file);
+				throw new AssertionError("Snapshot loaded from text");
+			} catch (ParsingException expected) {}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static void check(Parser<MarkupNode> parser, String input) throws Exception {
+		List<String> expected = new ArrayList<>();
+		parser.parse(Fixtures.reader(input), Fixtures.recorder(expected));
+		EventSnapshot.Writer writer = new EventSnapshot.Writer();
+		parser.parse(Fixtures.reader(input), writer);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		writer.write(output);
+		EventSnapshot snapshot = EventSnapshot.load(ByteBuffer.wrap(output.toByteArray()));
+		List<String> actual = new ArrayList<>();
+		snapshot.replay(parser, Fixtures.recorder(actual));
+		Fixtures.compare(expected, actual);
+		if (snapshot.toDocument(parser).size() == 0) { throw new AssertionError("Empty document"); }
+		System.out.println(parser.getClass().getSimpleName() + ": " + actual.size() + " events in " + output.size() + " bytes, same events");
+	}
+}
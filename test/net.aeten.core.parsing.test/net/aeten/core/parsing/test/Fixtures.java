@@ -0,0 +1,144 @@
+package net.aeten.core.parsing.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.Document;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingEvent;
+import net.aeten.core.parsing.support.ControlledHandler;
+import net.aeten.core.parsing.support.ReusedDataHandler;
+
+/**
+ * Inputs and event recorders shared by the tests. A recorded event is a line of its kind, node type, value and parent, so
+ * that the events of two parses are compared as lists of lines.
+ */
+final class Fixtures {
+	/** Declaration, comment, attributes, empty and text elements, blank text between elements and a CDATA section. */
+	static final String XML = "<?xml version=\"1.0\"?>\n<!-- comment --><document type=\"type.document\">\n <record id=\"1\"><tag>value 1</tag><list><value tag1=\"1\" tag2=\"2\"/><value>value 2</value></list>\n<map><tag1>x</tag1><![CDATA[<cdata>]]></map></record>\n <last>end</last></document>";
+	/** Keys sharing prefixes at several depths, followed by another root. */
+	static final String PROPERTIES = "record.tag=value\nrecord.map.tag1=x\nrecord.map.tag2=y\nrecord.map.deep.tag=w\nother=z\n";
+	/** Every syntax of the properties format: comments, separators, escapes, continuations, line terminators and repeated keys. */
+	static final String PROPERTIES_SYNTAX = "# comment \\\na.b = 1\n! other comment\n   a.c:2\na.d   3\na.e=multi\\\n    line \\\n  value\na.f = x\\\\\na.g\\ key = spaced\na.h\\=k = eq\na.i = \u00e9t\u00e9 \\t tab \\n nl \\u0041\na.j =\na.k\na.l = = double\nb.x\\:y = colon\n  \t\nb.y=trailing\\\\\\\n   continued\nd.a=cr\rd.b=x\r\nd.c=y\\\r\n  z\r\nb.a = first\nb.a = last\nc.a = end\\";
+	/** Flow collections, nested and holding a quoted separator, within block ones. */
+	static final String FLOW_YAML = "a: {x: [1, \"2, ]\"], y: z}\nb: [[p, q], {m: n}]\nc:\n  - d\n  -\n    e: f\n    g: h\n  - i\nj: k\n";
+
+	private Fixtures() {}
+
+	/**
+	 * @return test.yaml, the block syntax of YAML with types, sequences and nested maps.
+	 */
+	static String yaml() throws IOException {
+		return new String(resource("test.yaml"), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the content of a resource of the test package.
+	 */
+	static byte[] resource(String name) throws IOException {
+		InputStream input = Fixtures.class.getClassLoader().getResourceAsStream(Fixtures.class.getPackage().getName().replace('.', '/') + "/" + name);
+		if (input == null) { throw new IOException("No resource " + name); }
+		try (InputStream in = input) {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			for (int length; (length = in.read(buffer)) != -1;) {
+				output.write(buffer, 0, length);
+			}
+			return output.toByteArray();
+		}
+	}
+
+	/**
+	 * @return a reader of the UTF-8 encoding of the input, which does not tell its length as a {@link java.io.StringReader}
+	 *         would.
+	 */
+	static Reader reader(String input) {
+		return new InputStreamReader(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+	}
+
+	static String line(ParsingData<MarkupNode> data) {
+		return data.getEvent() + " " + data.getNodeType() + " " + data.getValue() + " " + data.getParent();
+	}
+
+	static Handler<ParsingData<MarkupNode>> recorder(final List<String> events) {
+		return new Handler<ParsingData<MarkupNode>>() {
+			@Override
+			public void handleEvent(ParsingData<MarkupNode> data) {
+				events.add(line(data));
+			}
+		};
+	}
+
+	/**
+	 * @return a recorder giving the signal once the event of the index is recorded, and continuing otherwise.
+	 */
+	static ControlledHandler recorder(List<String> events, int index, ControlledHandler.Signal signal, boolean reused) {
+		return reused? new ReusedRecorder(events, index, signal): new Recorder(events, index, signal);
+	}
+
+	static void compare(List<String> expected, List<String> actual) {
+		for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+			if (!expected.get(i).equals(actual.get(i))) { throw new AssertionError("Event " + i + ": expected <" + expected.get(i) + "> but was <" + actual.get(i) + ">"); }
+		}
+		if (expected.size() != actual.size()) { throw new AssertionError("Expected " + expected.size() + " events but was " + actual.size()); }
+	}
+
+	/**
+	 * @return the events without the descendants of the node started by the event of the index.
+	 */
+	static List<String> withoutChildren(List<String> events, int skipped) {
+		List<String> remaining = new ArrayList<>(events.subList(0, skipped + 1));
+		int index = skipped + 1;
+		if (events.get(skipped).startsWith(ParsingEvent.START_NODE.name())) {
+			for (int level = 0; level > 0 || !events.get(index).startsWith(ParsingEvent.END_NODE.name()); index++) {
+				level += events.get(index).startsWith(ParsingEvent.START_NODE.name())? 1: -1;
+			}
+		}
+		remaining.addAll(events.subList(index, events.size()));
+		return remaining;
+	}
+
+	/**
+	 * @return the tree of the node on a single line.
+	 */
+	static String print(Document.Node node) {
+		StringBuilder text = new StringBuilder().append('(').append(node.value).append(':').append(node.type);
+		for (Document.Node child : node.getChildren()) {
+			text.append(print(child));
+		}
+		return text.append(')').toString();
+	}
+
+	private static class Recorder extends ControlledHandler {
+		private final List<String> events;
+		private final int index;
+		private final Signal signal;
+
+		Recorder(List<String> events, int index, Signal signal) {
+			this.events = events;
+			this.index = index;
+			this.signal = signal;
+		}
+
+		@Override
+		public Signal handle(ParsingData<MarkupNode> data) {
+			events.add(line(data));
+			return (events.size() == index + 1)? signal: Signal.CONTINUE;
+		}
+	}
+
+	private static class ReusedRecorder extends Recorder implements ReusedDataHandler {
+		ReusedRecorder(List<String> events, int index, Signal signal) {
+			super(events, index, signal);
+		}
+	}
+}
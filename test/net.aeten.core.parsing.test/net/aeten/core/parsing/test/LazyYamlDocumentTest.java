@@ -0,0 +1,141 @@
+package net.aeten.core.parsing.test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.support.CompactDocument;
+import net.aeten.core.parsing.yaml.LazyYamlDocument;
+import net.aeten.core.parsing.yaml.YamlParser;
+
+/**
+ * Checks that the sections of a {@link LazyYamlDocument} are the entries of the whole document, are only parsed when
+ * navigated, and are those of the edited input after an edit.
+ */
+public class LazyYamlDocumentTest {
+
+	public static void main(String[] args) throws Exception {
+		byte[] yaml = Fixtures.resource("test.yaml");
+		CompactDocument.Builder builder = CompactDocument.builder();
+		new YamlParser().parse(ByteBuffer.wrap(yaml), builder);
+		List<CompactDocument.Node> entries = builder.build().getRoot().getChildren().get(0).getChildren().get(0).getChildren();
+
+		LazyYamlDocument document = LazyYamlDocument.load(ByteBuffer.wrap(yaml));
+		List<LazyYamlDocument.Section> sections = document.getSections();
+		if (sections.size() != entries.size()) { throw new AssertionError(sections.size() + " sections instead of " + entries.size()); }
+		LazyYamlDocument.Section map = document.getSection("map");
+		if (!print(map.getNode()).equals(print(entries.get(sections.indexOf(map))))) { throw new AssertionError(print(map.getNode())); }
+		for (LazyYamlDocument.Section section : sections) {
+			if (section.isLoaded() != (section == map)) { throw new AssertionError(section + " loaded before being navigated"); }
+		}
+		for (int i = 0; i < entries.size(); i++) {
+			String expected = print(entries.get(i)), actual = print(sections.get(i).getNode());
+			if (!expected.equals(actual)) { throw new AssertionError("Section " + sections.get(i) + ": expected <" + expected + "> but was <" + actual + ">"); }
+			if (!sections.get(i).getKey().equals(entries.get(i).asMappingEntry().getKey())) { throw new AssertionError("Key " + sections.get(i)); }
+		}
+		System.out.println(sections.size() + " sections, same as the whole document");
+
+		String text = "a: 1\nb:\n  c: [x, y]\n  d: 3\ne: z\n";
+		document = LazyYamlDocument.load(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+		document.getSection("e").getNode();
+		final List<String> changes = new ArrayList<>();
+		Handler<LazyYamlDocument.Change> listener = new Handler<LazyYamlDocument.Change>() {
+			@Override
+			public void handleEvent(LazyYamlDocument.Change change) {
+				changes.add(change.getKind() + " " + change.getDocument() + " " + change.getPath());
+			}
+		};
+		LazyYamlDocument edited = document.edit(text.indexOf("y]"), 1, "w, v", listener);
+		if (!changes.toString().equals("[CHANGED 0 [b, c, 1], ADDED 0 [b, c, 2]]")) { throw new AssertionError(changes.toString()); }
+		if (!edited.getSection("e").isLoaded() || edited.getSection("a").isLoaded()) { throw new AssertionError("Unchanged sections not kept"); }
+		check(edited, text.replace("y]", "w, v]"));
+		changes.clear();
+		check(edited.edit(0, 5, "", listener), text.replace("y]", "w, v]").substring(5));
+		if (!changes.toString().equals("[REMOVED 0 [a]]")) { throw new AssertionError(changes.toString()); }
+
+		// Items are indexed within their document, also once moved by an edit before them
+		String items = "- a\n- b\n---\n- c\n- d\n";
+		document = LazyYamlDocument.load(ByteBuffer.wrap(items.getBytes(StandardCharsets.UTF_8)));
+		checkChanges(document, items, "- d", "- e", changes, listener, "[CHANGED 1 [1]]");
+		checkChanges(document, items, "- c\n", "", changes, listener, "[REMOVED 1 [0]]");
+		edited = checkChanges(document, items, "", "- z\n", changes, listener, "[ADDED 0 [0]]");
+		checkChanges(edited, "- z\n" + items, "- b", "- x", changes, listener, "[CHANGED 0 [2]]");
+		checkChanges(edited, "- z\n" + items, "- d", "- e", changes, listener, "[CHANGED 1 [1]]");
+		edited = checkChanges(document, items, "- b", "---\n- b", changes, listener, "[ADDED 1 [0], REMOVED 0 [1]]");
+		checkChanges(edited, items.replace("- b", "---\n- b"), "- d", "- e", changes, listener, "[CHANGED 2 [1]]");
+		checkChanges(edited, items.replace("- b", "---\n- b"), "- b", "- y", changes, listener, "[CHANGED 1 [0]]");
+		System.out.println("Changes indexed within their document");
+
+		Random random = new Random(19);
+		String[] pieces = { "\n", " ", "  ", "- ", ":", "x: ", "[", "]", "{", "}", "'", "#", "---\n", "y", "\nz: 1\n" };
+		for (int i = 0; i < 2000; i++) {
+			byte[] initial = (i % 2 == 0)? yaml: items.getBytes(StandardCharsets.UTF_8);
+			String input = new String(initial, StandardCharsets.UTF_8);
+			LazyYamlDocument current = LazyYamlDocument.load(ByteBuffer.wrap(initial));
+			for (int j = 0; j < 3; j++) {
+				int offset = random.nextInt(input.length() + 1), removed = random.nextInt(Math.min(4, input.length() - offset) + 1);
+				String inserted = pieces[random.nextInt(pieces.length)];
+				input = input.substring(0, offset) + inserted + input.substring(offset + removed);
+				try {
+					current = current.edit(offset, removed, inserted, null);
+				} catch (ParsingException exception) {
+					// Invalid input, which loads no better
+					try {
+						LazyYamlDocument.load(ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8)));
+					} catch (ParsingException expected) {
+						break;
+					}
+					throw new AssertionError("Edit failed for <" + input + ">", exception);
+				}
+				check(current, input);
+			}
+		}
+		System.out.println("Edits indexed as the edited input");
+	}
+
+	/**
+	 * Checks that the sections of the edited document are those of the edited input, the input being in ASCII.
+	 */
+	private static void check(LazyYamlDocument edited, String input) throws ParsingException {
+		List<LazyYamlDocument.Section> expected = LazyYamlDocument.load(ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8))).getSections();
+		List<LazyYamlDocument.Section> actual = edited.getSections();
+		if (expected.size() != actual.size()) { throw new AssertionError(actual + " instead of " + expected + " for <" + input + ">"); }
+		for (int i = 0; i < expected.size(); i++) {
+			String expectedNode = node(expected.get(i)), actualNode = node(actual.get(i));
+			if (expected.get(i).getDocument() != actual.get(i).getDocument() || expected.get(i).getIndex() != actual.get(i).getIndex()) { throw new AssertionError("Section " + i + ": item " + expected.get(i).getIndex() + " of document " + expected.get(i).getDocument() + " expected but was " + actual.get(i).getIndex() + " of " + actual.get(i).getDocument() + " for <" + input + ">"); }
+			if (!expectedNode.equals(actualNode) || !String.valueOf(expected.get(i).getKey()).equals(String.valueOf(actual.get(i).getKey()))) { throw new AssertionError("Section " + i + ": expected <" + expectedNode + "> but was <" + actualNode + "> for <" + input + ">"); }
+		}
+	}
+
+	/**
+	 * Replaces the first occurrence of the text, and checks the edited document and the changes.
+	 */
+	private static LazyYamlDocument checkChanges(LazyYamlDocument document, String input, String replaced, String replacement, List<String> changes, Handler<LazyYamlDocument.Change> listener, String expected) throws ParsingException {
+		changes.clear();
+		int offset = input.indexOf(replaced);
+		LazyYamlDocument edited = document.edit(offset, replaced.length(), replacement, listener);
+		check(edited, input.substring(0, offset) + replacement + input.substring(offset + replaced.length()));
+		if (!changes.toString().equals(expected)) { throw new AssertionError("Changes " + changes + " instead of " + expected); }
+		return edited;
+	}
+
+	private static String node(LazyYamlDocument.Section section) {
+		try {
+			return print(section.getNode());
+		} catch (ParsingException | RuntimeException exception) {
+			return exception.getClass().getName();
+		}
+	}
+
+	private static String print(CompactDocument.Node node) {
+		StringBuilder text = new StringBuilder().append('(').append(node);
+		for (CompactDocument.Node child : node.getChildren()) {
+			text.append(print(child));
+		}
+		return text.append(')').toString();
+	}
+}
@@ -0,0 +1,95 @@
+package net.aeten.core.parsing.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingEvent;
+import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.properties.PropertiesParser;
+import net.aeten.core.parsing.support.CompactDocument;
+import net.aeten.core.parsing.support.ControlledHandler;
+import net.aeten.core.parsing.support.MeteredParser;
+import net.aeten.core.parsing.support.ParsingMetrics;
+import net.aeten.core.parsing.xml.StaxXmlParser;
+import net.aeten.core.parsing.xml.XmlParser;
+import net.aeten.core.parsing.yaml.YamlParser;
+
+/**
+ * Checks that a {@link MeteredParser} delivers the events of the parser it measures, and counts them.
+ */
+public class MeteredParserTest {
+	/** Characters outside the basic plane, two chars each, and values across the lines of the input. */
+	private static final String UNICODE_PROPERTIES = "\u00e9.a = \ud83d\ude00\u00e9t\u00e9\nb.c = multi\\\n  line\nb.d = \u65e5\n";
+
+	public static void main(String[] args) throws Exception {
+		check(new YamlParser(), Fixtures.yaml());
+		check(new PropertiesParser(), UNICODE_PROPERTIES);
+
+		// Depth far over the one of the documents, with more events than those timed
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?>\n");
+		for (int i = 0; i < 40; i++) {
+			xml.append("<e i=\"").append(i).append("\">\ud83d\ude00");
+		}
+		for (int i = 0; i < 40; i++) {
+			xml.append("</e>");
+		}
+		check(new XmlParser(), xml.toString());
+		check(new StaxXmlParser(), xml.toString());
+
+		final List<ParsingMetrics> reported = new ArrayList<>();
+		MeteredParser parser = new MeteredParser(new XmlParser(), listener(reported));
+		try {
+			parser.parse(Fixtures.reader("<a><b></a>"), Fixtures.recorder(new ArrayList<String>()));
+			throw new AssertionError("Invalid input parsed");
+		} catch (ParsingException expected) {}
+		if (reported.size() != 1 || reported.get(0).getFailure() == null) { throw new AssertionError("Failure not reported: " + reported); }
+		System.out.println(reported.get(0));
+	}
+
+	private static void check(Parser<MarkupNode> parser, String input) throws Exception {
+		List<String> expected = new ArrayList<>();
+		parser.parse(Fixtures.reader(input), Fixtures.recorder(expected));
+		List<ParsingMetrics> reported = new ArrayList<>();
+		MeteredParser metered = new MeteredParser(parser, listener(reported));
+
+		List<String> actual = new ArrayList<>();
+		metered.parse(Fixtures.reader(input), Fixtures.recorder(actual));
+		Fixtures.compare(expected, actual);
+		ParsingMetrics metrics = reported.get(0);
+		int depth = 0, maxDepth = 0;
+		for (String event : expected) {
+			depth += event.startsWith(ParsingEvent.START_NODE.name())? 1: -1;
+			maxDepth = Math.max(depth, maxDepth);
+		}
+		if (metrics.getEvents() != expected.size() || metrics.getMaxDepth() != maxDepth || metrics.getCharacters() != input.length() || metrics.getFailure() != null) { throw new AssertionError(metrics.toString()); }
+		for (MarkupNode nodeType : MarkupNode.values()) {
+			int count = 0;
+			for (String event : expected) {
+				count += event.split(" ")[1].equals(nodeType.name())? 1: 0;
+			}
+			if (metrics.getEvents(nodeType) != count) { throw new AssertionError(nodeType + ": " + metrics); }
+		}
+		if (metrics.getHandlerNanoseconds() < 0 || metrics.getParserNanoseconds() < 0) { throw new AssertionError(metrics.toString()); }
+
+		// Controlled and reused handlers keep their modes
+		List<String> stopped = new ArrayList<>();
+		metered.parse(Fixtures.reader(input), Fixtures.recorder(stopped, 5, ControlledHandler.Signal.STOP, true));
+		Fixtures.compare(expected.subList(0, 6), stopped);
+		if (reported.get(1).getEvents() != 6) { throw new AssertionError("Events after the stop counted: " + reported.get(1)); }
+
+		if (CompactDocument.load(Fixtures.reader(input), metered).size() == 0 || reported.size() != 3) { throw new AssertionError("Document load not measured"); }
+		System.out.println(metrics);
+	}
+
+	private static Handler<ParsingMetrics> listener(final List<ParsingMetrics> reported) {
+		return new Handler<ParsingMetrics>() {
+			@Override
+			public void handleEvent(ParsingMetrics metrics) {
+				reported.add(metrics);
+			}
+		};
+	}
+}
@@ -0,0 +1,68 @@
+package net.aeten.core.parsing.test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import net.aeten.core.parsing.yaml.YamlParser;
+import net.aeten.core.parsing.yaml.YamlParser.Delivery;
+
+/**
+ * Checks that the documents of a YAML stream parsed in parallel give the events of each document parsed alone.
+ */
+public class ParallelYamlTest {
+
+	public static void main(String[] args) throws Exception {
+		String document = Fixtures.yaml();
+		List<String> documents = new ArrayList<>();
+		StringBuilder input = new StringBuilder("# heading comment\n\n");
+		for (int i = 0; i < 8000; i++) {
+			String text = document.replace("tag: value", "tag: value " + i);
+			if (i % 3 == 0) {
+				text += "...\n# trailing comment\n";
+			}
+			documents.add(text);
+			input.append(text);
+		}
+		byte[] bytes = input.toString().getBytes(StandardCharsets.UTF_8);
+
+		List<String> expected = new ArrayList<>();
+		for (String text : documents) {
+			new YamlParser().parse(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), Fixtures.recorder(expected));
+		}
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<String> ordered = new ArrayList<>();
+			new YamlParser().parse(ByteBuffer.wrap(bytes), Fixtures.recorder(ordered), pool, Delivery.ORDERED);
+			Fixtures.compare(expected, ordered);
+
+			List<String> unordered = new ArrayList<>();
+			new YamlParser().parse(ByteBuffer.wrap(bytes), Fixtures.recorder(unordered), pool, Delivery.UNORDERED);
+			Fixtures.compare(byDocument(expected), byDocument(unordered));
+		} finally {
+			pool.shutdown();
+		}
+		System.out.println(documents.size() + " documents, " + expected.size() + " events, same as parsed alone");
+	}
+
+	/**
+	 * @return the events of each document joined, sorted.
+	 */
+	private static List<String> byDocument(List<String> events) {
+		List<String> documents = new ArrayList<>();
+		StringBuilder document = new StringBuilder();
+		for (String event : events) {
+			if (event.startsWith("START_NODE DOCUMENT") && document.length() > 0) {
+				documents.add(document.toString());
+				document.setLength(0);
+			}
+			document.append(event).append('\n');
+		}
+		documents.add(document.toString());
+		Collections.sort(documents);
+		return documents;
+	}
+}
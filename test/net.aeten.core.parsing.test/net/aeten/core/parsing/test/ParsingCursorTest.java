@@ -0,0 +1,61 @@
+package net.aeten.core.parsing.test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.properties.PropertiesParser;
+import net.aeten.core.parsing.support.ParsingCursor;
+import net.aeten.core.parsing.support.PullParser;
+import net.aeten.core.parsing.xml.StaxXmlParser;
+import net.aeten.core.parsing.xml.XmlParser;
+import net.aeten.core.parsing.yaml.YamlParser;
+
+/**
+ * Checks that the cursor of each parser returns the events it fires, that skipping the children of any node removes exactly
+ * its descendants, and that {@link StaxXmlParser} fires the same events as {@link XmlParser}.
+ */
+public class ParsingCursorTest {
+	public static void main(String[] args) throws Exception {
+		List<String> expected = new ArrayList<>();
+		new XmlParser().parse(new StringReader(Fixtures.XML), Fixtures.recorder(expected));
+		List<String> actual = new ArrayList<>();
+		new StaxXmlParser().parse(new StringReader(Fixtures.XML), Fixtures.recorder(actual));
+		Fixtures.compare(expected, actual);
+		System.out.println(actual.size() + " events, same as the SAX parser");
+
+		check(new YamlParser(), Fixtures.yaml());
+		check(new YamlParser(), Fixtures.FLOW_YAML);
+		check(new XmlParser(), Fixtures.XML);
+		check(new StaxXmlParser(), Fixtures.XML);
+		check(new PropertiesParser(), Fixtures.PROPERTIES);
+	}
+
+	private static void check(PullParser parser, String input) throws Exception {
+		List<String> expected = new ArrayList<>();
+		parser.parse(Fixtures.reader(input), Fixtures.recorder(expected));
+		Fixtures.compare(expected, pull(parser, input, -1));
+		for (int skipped = 0; skipped < expected.size(); skipped++) {
+			Fixtures.compare(Fixtures.withoutChildren(expected, skipped), pull(parser, input, skipped));
+		}
+		System.out.println(parser.getClass().getSimpleName() + ": " + expected.size() + " events and skipped nodes");
+	}
+
+	private static List<String> pull(PullParser parser, String input, int skipped) throws Exception {
+		List<String> events = new ArrayList<>();
+		try (ParsingCursor cursor = parser.open(Fixtures.reader(input))) {
+			for (ParsingData<MarkupNode> data; (data = cursor.next()) != null;) {
+				events.add(Fixtures.line(data));
+				if (events.size() == skipped + 1) {
+					int depth = cursor.currentDepth();
+					cursor.skipChildren();
+					if (cursor.currentDepth() != depth) { throw new AssertionError("Depth changed by a skip"); }
+				}
+			}
+			if (cursor.currentDepth() != 0) { throw new AssertionError("Depth " + cursor.currentDepth() + " at the end"); }
+		}
+		return events;
+	}
+}
@@ -0,0 +1,123 @@
+package net.aeten.core.parsing.test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.properties.PropertiesParser;
+import net.aeten.core.parsing.properties.PropertiesParser.Order;
+import net.aeten.core.parsing.support.ControlledHandler;
+import net.aeten.core.parsing.support.ParsingFeeder;
+import net.aeten.core.parsing.support.PushParser;
+import net.aeten.core.parsing.yaml.YamlParser;
+
+/**
+ * Checks that a {@link ParsingFeeder} fires the events of the reader, whatever the parts its input is cut into.
+ */
+public class ParsingFeederTest {
+
+	public static void main(String[] args) throws Exception {
+		byte[] yaml = Fixtures.resource("test.yaml");
+		StringBuilder documents = new StringBuilder();
+		for (int i = 0; i < 3; i++) {
+			documents.append(new String(yaml, StandardCharsets.UTF_8)).append("\n");
+		}
+		documents.append("---\na: {x: [1, \"2, ]\"], y: z} # comment\nb: [[p, q],\n  {m: n}]\nc: été € 😀\n");
+		Random random = new Random(0);
+		check(new YamlParser(), documents.toString(), random);
+
+		String properties = Fixtures.PROPERTIES_SYNTAX + "\né.€ = 😀été";
+		check(new PropertiesParser(Order.GROUPED), properties, random);
+		check(new PropertiesParser(Order.UNSORTED), properties, random);
+		check(new PropertiesParser(Order.UNSORTED, 3), properties, random);
+
+		checkEarlyEvents();
+		checkStop(new YamlParser(), "a: 1\nb: 2\nc: 3\n");
+		checkStop(new PropertiesParser(Order.GROUPED), "a=1\nb=2\nc=3\n");
+	}
+
+	/**
+	 * Feeds the input by parts of every length up to a few, then of random lengths, through a buffer overwritten after each.
+	 */
+	private static void check(PushParser parser, String input, Random random) throws Exception {
+		List<String> expected = new ArrayList<>();
+		parser.parse(Fixtures.reader(input), Fixtures.recorder(expected));
+		byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+		for (int length = 1; length <= 8; length++) {
+			List<String> actual = new ArrayList<>();
+			feed(parser.feeder(Fixtures.recorder(actual)), bytes, length, null);
+			Fixtures.compare(expected, actual);
+		}
+		for (int i = 0; i < 100; i++) {
+			List<String> actual = new ArrayList<>();
+			feed(parser.feeder(Fixtures.recorder(actual)), bytes, 0, random);
+			Fixtures.compare(expected, actual);
+		}
+		System.out.println(parser.getClass().getSimpleName() + ": " + expected.size() + " events, same whatever the parts");
+	}
+
+	private static void feed(ParsingFeeder feeder, byte[] bytes, int length, Random random) throws Exception {
+		ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+		for (int start = 0; start < bytes.length;) {
+			int end = Math.min(bytes.length, start + ((random == null)? length: 1 + random.nextInt(64)));
+			buffer.clear();
+			buffer.put(bytes, start, end - start).flip();
+			feeder.feed(buffer);
+			if (buffer.hasRemaining()) { throw new AssertionError(buffer.remaining() + " bytes left in the buffer"); }
+			buffer.clear();
+			while (buffer.hasRemaining()) {
+				buffer.put((byte) '!');
+			}
+			start = end;
+		}
+		feeder.endOfInput();
+		if (!feeder.isDone()) { throw new AssertionError("Feeder not done"); }
+	}
+
+	/**
+	 * Checks that the events of the complete entries are fired before the end of input.
+	 */
+	private static void checkEarlyEvents() throws Exception {
+		List<String> events = new ArrayList<>();
+		ParsingFeeder feeder = new YamlParser().feeder(Fixtures.recorder(events));
+		feeder.feed(ByteBuffer.wrap("a: 1\nb: ".getBytes(StandardCharsets.UTF_8)));
+		if (!events.contains("END_NODE TEXT 1 null")) { throw new AssertionError("Events of a missing: " + events); }
+		if (events.toString().contains("TEXT b")) { throw new AssertionError("Events of b fired before its line ends: " + events); }
+
+		events.clear();
+		feeder = new PropertiesParser(Order.GROUPED).feeder(Fixtures.recorder(events));
+		feeder.feed(ByteBuffer.wrap("a=1\nb=2\n".getBytes(StandardCharsets.UTF_8)));
+		if (!events.contains("START_NODE TEXT 1 null")) { throw new AssertionError("Events of a missing: " + events); }
+		if (events.toString().contains("TAG b")) { throw new AssertionError("Events of b fired before the next key: " + events); }
+		feeder.feed(ByteBuffer.wrap("b=3\nc".getBytes(StandardCharsets.UTF_8)));
+		if (events.toString().contains("TAG b")) { throw new AssertionError("Events of b fired before the next key: " + events); }
+		feeder.feed(ByteBuffer.wrap("=4\n".getBytes(StandardCharsets.UTF_8)));
+		if (!events.contains("START_NODE TEXT 3 null")) { throw new AssertionError("Last value of b missing: " + events); }
+		feeder.close();
+		System.out.println("Complete entries fired before the end of input");
+	}
+
+	private static void checkStop(PushParser parser, String input) throws Exception {
+		final List<String> events = new ArrayList<>();
+		ParsingFeeder feeder = parser.feeder(new ControlledHandler() {
+			@Override
+			public Signal handle(ParsingData<MarkupNode> data) {
+				events.add(data.getEvent() + " " + data.getNodeType() + " " + data.getValue());
+				return (data.getNodeType() == MarkupNode.TEXT)? Signal.STOP: Signal.CONTINUE;
+			}
+		});
+		ByteBuffer bytes = ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8));
+		bytes.limit(8);
+		feeder.feed(bytes);
+		if (!feeder.isDone()) { throw new AssertionError("Not done once stopped"); }
+		bytes.limit(bytes.capacity());
+		feeder.feed(bytes);
+		if (bytes.hasRemaining() || events.toString().contains("TAG b")) { throw new AssertionError("Fed after the stop: " + events); }
+		feeder.close();
+		System.out.println(parser.getClass().getSimpleName() + ": stopped after " + events.size() + " events");
+	}
+}
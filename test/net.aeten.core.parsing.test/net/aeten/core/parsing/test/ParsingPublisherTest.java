@@ -0,0 +1,157 @@
+package net.aeten.core.parsing.test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.properties.PropertiesParser;
+import net.aeten.core.parsing.support.ParsingFlow;
+import net.aeten.core.parsing.support.ParsingPublisher;
+import net.aeten.core.parsing.xml.XmlParser;
+import net.aeten.core.parsing.yaml.YamlParser;
+
+/**
+ * Checks that a {@link ParsingPublisher} delivers the events of the parse, no more than requested.
+ */
+public class ParsingPublisherTest {
+
+	public static void main(String[] args) throws Exception {
+		byte[] yaml = Fixtures.resource("test.yaml");
+		StringBuilder documents = new StringBuilder(), xml = new StringBuilder("<document>");
+		for (int i = 0; i < 200; i++) {
+			documents.append(new String(yaml, StandardCharsets.UTF_8)).append("\n");
+			xml.append("<record id=\"").append(i).append("\"><tag>value ").append(i).append("</tag></record>");
+		}
+		xml.append("</document>");
+		Path file = Files.createTempFile("publisher", ".yaml");
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Files.write(file, documents.toString().getBytes(StandardCharsets.UTF_8));
+			YamlParser yamlParser = new YamlParser();
+			check(yamlParser, documents.toString(), new ParsingPublisher(yamlParser, AsynchronousFileChannel.open(file, StandardOpenOption.READ)), 1);
+			check(new PropertiesParser(), Fixtures.PROPERTIES_SYNTAX, new ParsingPublisher(new PropertiesParser(), channel(Fixtures.PROPERTIES_SYNTAX), executor), Long.MAX_VALUE);
+			check(new XmlParser(), xml.toString(), new ParsingPublisher(new XmlParser(), channel(xml.toString()), executor), 7);
+
+			AsynchronousFileChannel channel = AsynchronousFileChannel.open(file, StandardOpenOption.READ);
+			ParsingPublisher publisher = new ParsingPublisher(yamlParser, channel);
+			Recorder recorder = new Recorder(0);
+			publisher.subscribe(recorder);
+			recorder.subscription.request(10);
+			Thread.sleep(200);
+			if (recorder.events.size() != 10 || recorder.isTerminated()) { throw new AssertionError(recorder.events.size() + " events delivered for 10 requested"); }
+			recorder.subscription.cancel();
+			if (channel.isOpen()) { throw new AssertionError("Channel open once cancelled"); }
+
+			Recorder second = new Recorder(1);
+			publisher.subscribe(second);
+			second.await();
+			if (!(second.failure instanceof IllegalStateException)) { throw new AssertionError("Second subscriber accepted"); }
+
+			recorder = new Recorder(0);
+			new ParsingPublisher(yamlParser, AsynchronousFileChannel.open(file, StandardOpenOption.READ)).subscribe(recorder);
+			recorder.subscription.request(0);
+			recorder.await();
+			if (!(recorder.failure instanceof IllegalArgumentException)) { throw new AssertionError("Request of 0 accepted"); }
+
+			recorder = new Recorder(Long.MAX_VALUE);
+			new ParsingPublisher(new XmlParser(), channel("<a><b></a>"), executor).subscribe(recorder);
+			recorder.await();
+			if (!(recorder.failure instanceof ParsingException)) { throw new AssertionError("Invalid input completed"); }
+			System.out.println("Demand, cancellation and failures signaled");
+		} finally {
+			executor.shutdown();
+			Files.delete(file);
+		}
+	}
+
+	private static ReadableByteChannel channel(String input) {
+		return Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static void check(Parser<MarkupNode> parser, String input, ParsingPublisher publisher, long request) throws Exception {
+		List<String> expected = new ArrayList<>();
+		parser.parse(Fixtures.reader(input), Fixtures.recorder(expected));
+		Recorder recorder = new Recorder(request);
+		publisher.subscribe(recorder);
+		recorder.await();
+		if (recorder.failure != null) { throw new AssertionError(recorder.failure); }
+		Fixtures.compare(expected, recorder.events);
+		System.out.println(parser.getClass().getSimpleName() + ": " + expected.size() + " events published by requests of " + request);
+	}
+
+	/**
+	 * Subscriber recording the events, requesting as many again each time it has handled the given number of them.
+	 */
+	private static class Recorder implements ParsingFlow.Subscriber<ParsingData<MarkupNode>> {
+		final List<String> events = new ArrayList<>();
+		final Handler<ParsingData<MarkupNode>> record = Fixtures.recorder(events);
+		private final long request;
+		private final CountDownLatch terminated = new CountDownLatch(1);
+		volatile ParsingFlow.Subscription subscription;
+		volatile Throwable failure = null;
+		private boolean signaled = false;
+		private long handled = 0;
+
+		Recorder(long request) {
+			this.request = request;
+		}
+
+		@Override
+		public void onSubscribe(ParsingFlow.Subscription subscription) {
+			this.subscription = subscription;
+			if (request > 0) {
+				subscription.request(request);
+			}
+		}
+
+		@Override
+		public synchronized void onNext(ParsingData<MarkupNode> item) {
+			if (signaled) { throw new AssertionError("Event after the end"); }
+			record.handleEvent(item);
+			if (request > 0 && ++handled % request == 0) {
+				subscription.request(request);
+			}
+		}
+
+		@Override
+		public synchronized void onError(Throwable failure) {
+			this.failure = failure;
+			end();
+		}
+
+		@Override
+		public synchronized void onComplete() {
+			end();
+		}
+
+		private void end() {
+			if (signaled) { throw new AssertionError("Ended twice"); }
+			signaled = true;
+			terminated.countDown();
+		}
+
+		boolean isTerminated() {
+			return terminated.getCount() == 0;
+		}
+
+		void await() throws InterruptedException {
+			if (!terminated.await(30, TimeUnit.SECONDS)) { throw new AssertionError("Not terminated after " + events.size() + " events"); }
+		}
+	}
+}
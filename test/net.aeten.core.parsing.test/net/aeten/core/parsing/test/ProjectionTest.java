@@ -0,0 +1,274 @@
+package net.aeten.core.parsing.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.Parser;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingEvent;
+import net.aeten.core.parsing.properties.PropertiesParser;
+import net.aeten.core.parsing.support.ControlledHandler;
+import net.aeten.core.parsing.support.MeteredParser;
+import net.aeten.core.parsing.support.ParsingMetrics;
+import net.aeten.core.parsing.support.Projection;
+import net.aeten.core.parsing.xml.StaxXmlParser;
+import net.aeten.core.parsing.xml.XmlParser;
+import net.aeten.core.parsing.yaml.YamlParser;
+
+/**
+ * Checks that a {@link Projection} hands on the events a projection of the whole event tree keeps, with every parser.
+ */
+public class ProjectionTest {
+	private static final String NOT_STEP = new String("not a step");
+	/** A name at every depth, in maps and in sequence items, and as a value. */
+	private static final String NAMES_YAML = "a:\n  a:\n    a: 1\n    b: 2\n  b:\n    -\n      a: 3\n    -\n      b: a\nb: a\n";
+	/** Elements of the same name nested and side by side, an attribute and text between them. */
+	private static final String NAMES_XML = "<a><a><a>1</a><b>2</b></a><b x=\"a\"><a>3</a><a>4</a></b>text<a/></a>";
+	/** Indexed items, tags of the same name, holding a name of the root. */
+	private static final String LIST_PROPERTIES = "a.0.a=1\na.0.b=2\na.1.a=3\na.10.a=4\nb.a=5\n";
+
+	public static void main(String[] args) throws Exception {
+		String yaml = Fixtures.yaml();
+		Random random = new Random(25);
+		check(new YamlParser(), yaml, random, "map/map value 1 tag 1", "list/*/list value 1 tag 2");
+		check(new YamlParser(), Fixtures.FLOW_YAML, random, "a/x/*", "c/*/g", "b/*/*/m");
+		check(new YamlParser(), NAMES_YAML, random, "a/a", "a/b/*/a");
+		check(new XmlParser(), Fixtures.XML, random, "document/record/list/*/tag1", "document/last");
+		check(new XmlParser(), NAMES_XML, random, "a/a/a", "a/*/a");
+		check(new StaxXmlParser(), NAMES_XML, random, "a/b", "a/*/b");
+		check(new PropertiesParser(), LIST_PROPERTIES, random, "a/a", "*/b");
+		check(new PropertiesParser(), Fixtures.PROPERTIES_SYNTAX, random, "a/h=k", "*/a");
+
+		List<String> events = new ArrayList<>();
+		new YamlParser().parse(Fixtures.reader(yaml), Projection.compile().handler(Fixtures.recorder(events)));
+		if (!events.isEmpty()) { throw new AssertionError("No path projected " + events); }
+		try {
+			Projection.compile("map//a");
+			throw new AssertionError("Empty step compiled");
+		} catch (IllegalArgumentException expected) {}
+
+		final long[] delivered = new long[2];
+		for (int i = 0; i < 2; i++) {
+			final int index = i;
+			Parser<MarkupNode> parser = new MeteredParser(new YamlParser(), new Handler<ParsingMetrics>() {
+				@Override
+				public void handleEvent(ParsingMetrics metrics) {
+					delivered[index] = metrics.getEvents();
+				}
+			});
+			Handler<ParsingData<MarkupNode>> recorder = Fixtures.recorder(new ArrayList<String>());
+			parser.parse(Fixtures.reader(yaml), (i == 0)? recorder: Projection.compile("map/map value 1 tag 1").handler(recorder));
+		}
+		if (delivered[1] >= delivered[0]) { throw new AssertionError("Projection delivered " + delivered[1] + " events of " + delivered[0]); }
+		System.out.println("Projection delivered " + delivered[1] + " events of " + delivered[0]);
+	}
+
+	private static void check(Parser<MarkupNode> parser, String input, Random random, String... paths) throws Exception {
+		List<Event> all = new ArrayList<>();
+		parser.parse(Fixtures.reader(input), recorder(all));
+		Node root = tree(all);
+		List<String> names = new ArrayList<>();
+		paths(root, null, new ArrayList<String>(), all, names);
+
+		List<List<String>> pathSets = new ArrayList<>();
+		pathSets.add(Arrays.asList(paths));
+		pathSets.add(Arrays.asList(""));
+		pathSets.add(Arrays.asList("none"));
+		for (String name : names) {
+			pathSets.add(Arrays.asList(name));
+		}
+		for (int i = 0; i < 200; i++) {
+			Set<String> pathSet = new LinkedHashSet<>();
+			for (int n = 1 + random.nextInt(3); n > 0; n--) {
+				String[] steps = names.get(random.nextInt(names.size())).split("/", -1);
+				StringBuilder path = new StringBuilder();
+				for (int s = 0, length = 1 + random.nextInt(steps.length); s < length; s++) {
+					path.append((s == 0)? "": "/").append((random.nextInt(3) == 0)? "*": steps[s]);
+				}
+				pathSet.add(path.toString());
+			}
+			pathSets.add(new ArrayList<>(pathSet));
+		}
+
+		int projected = 0;
+		for (List<String> pathSet : pathSets) {
+			List<String> expected = new ArrayList<>();
+			project(root, null, new ArrayList<String>(), all, pathSet, expected);
+			List<String> events = new ArrayList<>();
+			parser.parse(Fixtures.reader(input), Projection.compile(pathSet).handler(Fixtures.recorder(events)));
+			Fixtures.compare(expected, events);
+			for (boolean reused : new boolean[] { false, true }) {
+				events = new ArrayList<>();
+				parser.parse(Fixtures.reader(input), Projection.compile(pathSet).handler(Fixtures.recorder(events, Integer.MAX_VALUE, ControlledHandler.Signal.CONTINUE, reused)));
+				Fixtures.compare(expected, events);
+			}
+			for (int index = 0; index < expected.size(); index += 1 + expected.size() / 8) {
+				events = new ArrayList<>();
+				parser.parse(Fixtures.reader(input), Projection.compile(pathSet).handler(Fixtures.recorder(events, index, ControlledHandler.Signal.STOP, false)));
+				Fixtures.compare(expected.subList(0, index + 1), events);
+			}
+			projected += expected.size();
+		}
+		System.out.println(parser.getClass().getSimpleName() + ": " + pathSets.size() + " projections of " + all.size() + " events, " + projected + " projected");
+	}
+
+	/**
+	 * Event of the whole parse, kept to build its tree.
+	 */
+	private static class Event {
+		final ParsingEvent event;
+		final MarkupNode nodeType;
+		final String value, parent;
+
+		Event(ParsingData<MarkupNode> data) {
+			event = data.getEvent();
+			nodeType = data.getNodeType();
+			value = data.getValue();
+			parent = data.getParent();
+		}
+
+		@Override
+		public String toString() {
+			return event + " " + nodeType + " " + value + " " + parent;
+		}
+	}
+
+	private static class Node {
+		final List<Node> children = new ArrayList<>();
+		int start, end;
+	}
+
+	private static Handler<ParsingData<MarkupNode>> recorder(final List<Event> events) {
+		return new Handler<ParsingData<MarkupNode>>() {
+			@Override
+			public void handleEvent(ParsingData<MarkupNode> data) {
+				events.add(new Event(data));
+			}
+		};
+	}
+
+	/**
+	 * @return a node above the roots of the events.
+	 */
+	private static Node tree(List<Event> events) {
+		List<Node> open = new ArrayList<>();
+		Node top = new Node();
+		open.add(top);
+		for (int i = 0; i < events.size(); i++) {
+			if (events.get(i).event == ParsingEvent.START_NODE) {
+				Node node = new Node();
+				node.start = i;
+				open.get(open.size() - 1).children.add(node);
+				open.add(node);
+			} else {
+				open.remove(open.size() - 1).end = i;
+			}
+		}
+		return top;
+	}
+
+	/**
+	 * @return the step of the node within its parent, null for an item of a list without name, {@link #NOT_STEP} if none.
+	 */
+	private static String step(Node node, Node parent, List<Event> events) {
+		Event start = events.get(node.start);
+		if (start.nodeType == MarkupNode.TAG) {
+			if (start.value != null) { return start.value; }
+			return node.children.isEmpty()? NOT_STEP: events.get(node.children.get(0).start).parent;
+		}
+		if (parent != null && events.get(parent.start).nodeType == MarkupNode.LIST && start.nodeType != MarkupNode.TYPE) { return null; }
+		return NOT_STEP;
+	}
+
+	private static List<String> path(List<String> path, String step) {
+		if (step == NOT_STEP) { return path; }
+		List<String> child = new ArrayList<>(path);
+		child.add(step);
+		return child;
+	}
+
+	/**
+	 * Adds the paths of the steps below the node, whose names can be written in a path.
+	 */
+	private static void paths(Node node, Node parent, List<String> path, List<Event> events, List<String> paths) {
+		for (Node child : node.children) {
+			String step = step(child, parent, events);
+			List<String> childPath = path(path, step);
+			if (step != NOT_STEP) {
+				StringBuilder written = new StringBuilder();
+				for (String name : childPath) {
+					if (name != null && (name.isEmpty() || name.contains("/") || name.equals("*"))) {
+						written = null;
+						break;
+					}
+					written.append((written.length() == 0)? "": "/").append((name == null)? "*": name);
+				}
+				if (written != null && !paths.contains(written.toString())) {
+					paths.add(written.toString());
+				}
+			}
+			paths(child, child, childPath, events, paths);
+		}
+	}
+
+	private static boolean matches(List<String> path, List<String> paths) {
+		for (String candidate : paths) {
+			String[] steps = candidate.isEmpty()? new String[0]: candidate.split("/");
+			if (steps.length != path.size()) {
+				continue;
+			}
+			boolean matches = true;
+			for (int i = 0; i < steps.length && matches; i++) {
+				matches = steps[i].equals("*") || steps[i].equals(path.get(i));
+			}
+			if (matches) { return true; }
+		}
+		return false;
+	}
+
+	private static boolean matchesBelow(Node node, List<String> path, List<Event> events, List<String> paths) {
+		for (Node child : node.children) {
+			List<String> childPath = path(path, step(child, node, events));
+			if (matches(childPath, paths) || matchesBelow(child, childPath, events, paths)) { return true; }
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the events of the matched subtrees below the node, within the starts and ends of their ancestors and the leaves
+	 * leading the ancestor tags.
+	 */
+	private static void project(Node node, Node parent, List<String> path, List<Event> events, List<String> paths, List<String> projected) {
+		for (Node child : node.children) {
+			List<String> childPath = path(path, step(child, parent, events));
+			if (matches(childPath, paths)) {
+				for (int i = child.start; i <= child.end; i++) {
+					projected.add(events.get(i).toString());
+				}
+			} else if (matchesBelow(child, childPath, events, paths)) {
+				projected.add(events.get(child.start).toString());
+				if (events.get(child.start).nodeType == MarkupNode.TAG) {
+					for (Node leaf : child.children) {
+						if (!isLeaf(events.get(leaf.start).nodeType)) {
+							break;
+						}
+						projected.add(events.get(leaf.start).toString());
+						projected.add(events.get(leaf.end).toString());
+					}
+				}
+				project(child, child, childPath, events, paths, projected);
+				projected.add(events.get(child.end).toString());
+			}
+		}
+	}
+
+	private static boolean isLeaf(MarkupNode nodeType) {
+		return nodeType == MarkupNode.TYPE || nodeType == MarkupNode.TEXT || nodeType == MarkupNode.ANCHOR || nodeType == MarkupNode.REFERENCE || nodeType == MarkupNode.COMMENT;
+	}
+}
@@ -0,0 +1,96 @@
+package net.aeten.core.parsing.test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeSet;
+
+import net.aeten.core.parsing.properties.PropertiesParser;
+import net.aeten.core.parsing.properties.PropertiesParser.Order;
+
+/**
+ * Checks that {@link PropertiesParser} reads the entries {@link Properties} loads, whether they are sorted in memory, spilled
+ * to temporary files or streamed in order.
+ */
+public class PropertiesParserTest {
+
+	public static void main(String[] args) throws Exception {
+		check(Fixtures.PROPERTIES_SYNTAX);
+
+		Random random = new Random(0);
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			for (int segment = random.nextInt(4); segment >= 0; segment--) {
+				input.append((char) ('a' + random.nextInt(6))).append((char) ('a' + random.nextInt(26)));
+				if (segment > 0) {
+					input.append('.');
+				}
+			}
+			input.append(" = ").append(i).append('\n');
+		}
+		check(input.toString());
+
+		checkList(100000, random);
+	}
+
+	/**
+	 * Checks that the shuffled items of an indexed list come in the order of their indexes, each as a tag of the list name.
+	 */
+	private static void checkList(int size, Random random) throws Exception {
+		List<String> lines = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			lines.add("list." + i + ".value = " + i + '\n');
+		}
+		Collections.shuffle(lines, random);
+		StringBuilder input = new StringBuilder();
+		for (String line : lines) {
+			input.append(line);
+		}
+		for (int runLength : new int[] { PropertiesParser.RUN_LENGTH, 1000 }) {
+			List<String> events = new ArrayList<>();
+			new PropertiesParser(Order.UNSORTED, runLength).parse(new StringReader(input.toString()), Fixtures.recorder(events));
+			int index = 0;
+			for (String event : events) {
+				if (event.startsWith("START_NODE TAG ") && !event.equals("START_NODE TAG list null") && !event.equals("START_NODE TAG value list")) { throw new AssertionError(event); }
+				if (event.startsWith("START_NODE TEXT ") && !event.equals("START_NODE TEXT " + index++ + " list")) { throw new AssertionError(event + " instead of item " + (index - 1)); }
+			}
+			if (index != size) { throw new AssertionError(index + " items instead of " + size); }
+		}
+		System.out.println(size + " list items, in order");
+	}
+
+	private static void check(String input) throws Exception {
+		Properties properties = new Properties();
+		properties.load(new StringReader(input));
+		List<String> expected = new ArrayList<>();
+		new PropertiesParser(Order.GROUPED).parse(new StringReader(sorted(properties)), Fixtures.recorder(expected));
+		for (int runLength : new int[] { PropertiesParser.RUN_LENGTH, 7, 1 }) {
+			List<String> actual = new ArrayList<>();
+			new PropertiesParser(Order.UNSORTED, runLength).parse(new StringReader(input), Fixtures.recorder(actual));
+			Fixtures.compare(expected, actual);
+		}
+		System.out.println(properties.size() + " keys, " + expected.size() + " events, same as Properties");
+	}
+
+	/**
+	 * @return the entries sorted by key, each character being escaped.
+	 */
+	private static String sorted(Properties properties) {
+		StringBuilder text = new StringBuilder();
+		for (String key : new TreeSet<>(properties.stringPropertyNames())) {
+			escape(text, key).append('=');
+			escape(text, properties.getProperty(key)).append('\n');
+		}
+		return text.toString();
+	}
+
+	private static StringBuilder escape(StringBuilder text, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			text.append(String.format("\\u%04x", (int) value.charAt(i)));
+		}
+		return text;
+	}
+}
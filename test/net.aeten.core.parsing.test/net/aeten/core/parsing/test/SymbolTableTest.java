@@ -0,0 +1,50 @@
+package net.aeten.core.parsing.test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.support.SymbolTable;
+import net.aeten.core.parsing.yaml.YamlParser;
+
+/**
+ * Checks that a {@link SymbolTable} hands out one instance by symbol up to its bound, and that the keys of a YAML parse share
+ * their instances.
+ */
+public class SymbolTableTest {
+
+	public static void main(String[] args) throws Exception {
+		SymbolTable symbols = new SymbolTable(1000);
+		for (int i = 0; i < 2000; i++) {
+			String symbol = "key " + i;
+			String interned = symbols.intern("[" + symbol + "]", 1, symbol.length() + 1);
+			if (!interned.equals(symbol) || (symbols.intern(new String(symbol)) == interned) != (i < 1000)) { throw new AssertionError(symbol); }
+		}
+		if (symbols.size() != 1000) { throw new AssertionError(symbols.size() + " symbols"); }
+
+		byte[] yaml = Fixtures.resource("test.yaml");
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			input.append(new String(yaml, StandardCharsets.UTF_8));
+		}
+		final Map<String, String> instances = new IdentityHashMap<>();
+		final Set<String> distinct = new HashSet<>();
+		new YamlParser().parse(ByteBuffer.wrap(input.toString().getBytes(StandardCharsets.UTF_8)), new Handler<ParsingData<MarkupNode>>() {
+			@Override
+			public void handleEvent(ParsingData<MarkupNode> data) {
+				if (data.getNodeType() == MarkupNode.TAG && data.getValue() != null || data.getNodeType() == MarkupNode.TYPE) {
+					instances.put(data.getValue(), data.getValue());
+					distinct.add(data.getValue());
+				}
+			}
+		});
+		if (instances.size() != distinct.size()) { throw new AssertionError(instances.size() + " instances of keys and types"); }
+		System.out.println(symbols.size() + " symbols kept, " + instances.size() + " instances of keys and types");
+	}
+}
@@ -0,0 +1,44 @@
+package net.aeten.core.parsing.test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.yaml.YamlParser;
+
+/**
+ * Checks that the byte scanner of {@link YamlParser#parse(ByteBuffer, Handler)} fires the same events as the
+ * {@link java.io.Reader} path, and that flow collections fire the events of the equivalent block collections.
+ */
+public class YamlScannerTest {
+	public static void main(String[] args) throws Exception {
+		byte[] content = Fixtures.resource((args.length == 0)? "test.yaml": args[0]);
+		YamlParser parser = new YamlParser();
+
+		List<String> expected = new ArrayList<>();
+		parser.parse(new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8)), Fixtures.recorder(expected));
+		List<String> actual = new ArrayList<>();
+		parser.parse(ByteBuffer.wrap(content), Fixtures.recorder(actual));
+
+		Fixtures.compare(expected, actual);
+		System.out.println(actual.size() + " events, same as the Reader path");
+
+		String flow = "a: {x: [1, \"2, ]\"], y: z} # comment\nb: [[p, q], {m: n}]\nc: d\n";
+		String block = "a:\n  x:\n    - 1\n    - \"2, ]\"\n  y: z\nb:\n  -\n    - p\n    - q\n  -\n    m: n\nc: d\n";
+		expected.clear();
+		parser.parse(new StringReader(block), Fixtures.recorder(expected));
+		actual.clear();
+		parser.parse(new StringReader(flow), Fixtures.recorder(actual));
+		Fixtures.compare(expected, actual);
+		actual.clear();
+		parser.parse(ByteBuffer.wrap(flow.getBytes(StandardCharsets.UTF_8)), Fixtures.recorder(actual));
+		Fixtures.compare(expected, actual);
+		System.out.println(actual.size() + " events, same flow and block collections");
+	}
+}
@@ -0,0 +1,139 @@
+package net.aeten.core.parsing.test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.aeten.core.event.Handler;
+import net.aeten.core.parsing.MarkupNode;
+import net.aeten.core.parsing.ParsingData;
+import net.aeten.core.parsing.ParsingEvent;
+import net.aeten.core.parsing.ParsingException;
+import net.aeten.core.parsing.yaml.YamlParser;
+
+/**
+ * Checks that {@link YamlParser} reads type, reference and anchor values and indentations as the regular expressions its
+ * scanner replaces, on the values of test.yaml and on fuzzed ones.
+ */
+public class YamlTokenTest {
+	private static final Pattern TYPE_OR_REF_OR_ANCHOR_PATTERN = Pattern.compile("[!&*](\\p{Graph}+)(\\p{Blank})*([^#]*)(.*)");
+	/** No line terminator, separator, flow bracket nor quote, which the value of a single line entry cannot hold. */
+	private static final String ALPHABET = "!&*#-  \t\u000B\f\u00e9\u65e5abcXYZ019_.,";
+	private static final String INDENTATION = " \t\u000B\f";
+	/** Java types of the built-in tags, by name: the other names are fired as they are written. */
+	private static final Map<String, String> BUILT_IN_TYPES = new HashMap<>();
+	static {
+		BUILT_IN_TYPES.put("!str", String.class.getName());
+		BUILT_IN_TYPES.put("!bool", boolean.class.getName());
+		BUILT_IN_TYPES.put("!int", int.class.getName());
+		BUILT_IN_TYPES.put("!float", float.class.getName());
+		BUILT_IN_TYPES.put("!seq", List.class.getName());
+		BUILT_IN_TYPES.put("!set", Set.class.getName());
+		BUILT_IN_TYPES.put("!oset", LinkedHashSet.class.getName());
+		BUILT_IN_TYPES.put("!map", Map.class.getName());
+		BUILT_IN_TYPES.put("!omap", LinkedHashMap.class.getName());
+		BUILT_IN_TYPES.put("!binary", byte[].class.getName());
+	}
+
+	public static void main(String[] args) throws Exception {
+		YamlParser parser = new YamlParser();
+		int count = 0;
+		try (BufferedReader reader = new BufferedReader(new StringReader(Fixtures.yaml()))) {
+			for (String line; (line = reader.readLine()) != null;) {
+				String value = line.trim();
+				int separator = value.startsWith("---")? 2: value.startsWith("-")? 0: value.indexOf(':');
+				value = value.substring(separator + 1).trim();
+				if (!value.isEmpty() && "!&*".indexOf(value.charAt(0)) != -1) {
+					check(parser, value);
+					count++;
+				}
+			}
+		}
+		if (count == 0) { throw new AssertionError("No token in test.yaml"); }
+		for (String name : BUILT_IN_TYPES.keySet()) {
+			check(parser, "!" + name);
+			check(parser, "!" + name + " value # comment");
+			count += 2;
+		}
+		for (String value : new String[] { "!!foo", "!!foo value", "!!", "!!!", "!str", "&!map x" }) {
+			check(parser, value);
+			count++;
+		}
+		Random random = new Random((args.length == 0)? 0: Long.parseLong(args[0]));
+		for (int i = 0; i < 1000000; i++, count++) {
+			StringBuilder value = new StringBuilder().append("!&*".charAt(random.nextInt(3)));
+			for (int length = random.nextInt(24); value.length() < length;) {
+				value.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+			}
+			check(parser, value.toString().trim());
+		}
+		System.out.println(count + " values, same as the regular expressions");
+
+		List<String> expected = new ArrayList<>();
+		parser.parse(new StringReader("a:\n  b:\n    c: 1\n  d: 2\ne: 3\n"), Fixtures.recorder(expected));
+		for (int i = 0; i < 1000; i++) {
+			StringBuilder indentation = new StringBuilder();
+			for (int length = 1 + random.nextInt(4); indentation.length() < length;) {
+				indentation.append(INDENTATION.charAt(random.nextInt(INDENTATION.length())));
+			}
+			String indent = indentation.toString();
+			List<String> actual = new ArrayList<>();
+			parser.parse(new StringReader("a:\n" + indent + "b:\n" + indent + indent + "c: 1\n" + indent + "d: 2\ne: 3\n"), Fixtures.recorder(actual));
+			Fixtures.compare(expected, actual);
+		}
+		System.out.println("1000 indentations, same events");
+	}
+
+	/**
+	 * Parses the value of a single entry and checks its leaves against the groups of the regular expression: the name of the
+	 * token, then the text which follows it up to the comment, if any.
+	 */
+	private static void check(YamlParser parser, String value) throws Exception {
+		final List<ParsingEvent> events = new ArrayList<>();
+		final List<MarkupNode> nodeTypes = new ArrayList<>();
+		final List<String> values = new ArrayList<>();
+		Matcher matcher = TYPE_OR_REF_OR_ANCHOR_PATTERN.matcher(value);
+		try {
+			parser.parse(new StringReader("key: " + value + "\n"), new Handler<ParsingData<MarkupNode>>() {
+				@Override
+				public void handleEvent(ParsingData<MarkupNode> data) {
+					events.add(data.getEvent());
+					nodeTypes.add(data.getNodeType());
+					values.add(data.getValue());
+				}
+			});
+		} catch (ParsingException exception) {
+			if (matcher.matches()) { throw new AssertionError("Value <" + value + "> rejected", exception); }
+			return;
+		}
+		if (!matcher.matches()) { throw new AssertionError("Value <" + value + "> accepted"); }
+
+		MarkupNode nodeType = (value.charAt(0) == '!')? MarkupNode.TYPE: (value.charAt(0) == '&')? MarkupNode.REFERENCE: MarkupNode.ANCHOR;
+		int index = values.indexOf("key") + 1;
+		while (index < events.size() && (events.get(index) != ParsingEvent.START_NODE || nodeTypes.get(index) != nodeType)) {
+			index++;
+		}
+		if (index == events.size()) { throw new AssertionError("Value <" + value + ">: no " + nodeType); }
+		String name = matcher.group(1);
+		if (nodeType == MarkupNode.TYPE && BUILT_IN_TYPES.containsKey(name)) {
+			name = BUILT_IN_TYPES.get(name);
+		}
+		if (!name.equals(values.get(index))) { throw new AssertionError("Value <" + value + ">: " + nodeType + " <" + name + "> expected but was <" + values.get(index) + ">"); }
+
+		int text = events.size() - 1;
+		while (events.get(text) != ParsingEvent.START_NODE || nodeTypes.get(text) != MarkupNode.TEXT) {
+			text--;
+		}
+		String actual = (text < index)? "": values.get(text);
+		if (!matcher.group(3).equals(actual)) { throw new AssertionError("Value <" + value + ">: text <" + matcher.group(3) + "> expected but was <" + actual + ">"); }
+	}
+}